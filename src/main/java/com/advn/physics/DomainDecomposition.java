@@ -0,0 +1,456 @@
+package com.advn.physics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.stream.Stream;
+
+/**
+ * Splits a scene into x-strips and simulates it with one {@link RegionWorker} per strip, either
+ * as threads of this JVM or as separate worker processes.
+ *
+ * <p>A scene is a {@link Matrix} with one row per body and the columns x, y, vx, vy, radius and mass;
+ * the row index is the body id. Results use the same layout. Borders are placed at quantiles of x,
+ * so every region starts with about the same number of bodies. Ghosts only travel to the adjacent
+ * region, so every interior region must be at least as wide as the halo; the run methods reject
+ * scenes whose quantile borders would give a narrower strip. {@link #runSingle} runs the same
+ * scene in one {@link PhysicsWorld} with the same settings, for comparison. For scenes larger than
+ * the coordinating JVM's heap, {@link #runProcesses(Path, int, double, Path, Path)} reads the scene
+ * from a file and writes the result to a file.
+ *
+ * <pre>
+ * DomainDecomposition decomposition = new DomainDecomposition(4);
+ * decomposition.setTransport(DomainDecomposition.Transport.MAPPED_FILE);
+ * Matrix result = decomposition.runProcesses(scene, 1000, 1.0 / 60, workDirectory);
+ * </pre>
+ */
+public class DomainDecomposition {
+    /**
+     * The halo transport used between regions.
+     */
+    public enum Transport {
+        /** Loopback TCP sockets, see {@link SocketHaloTransport}. */
+        SOCKET,
+        /** Shared memory-mapped mailbox files, see {@link MappedFileHaloTransport}. */
+        MAPPED_FILE
+    }
+
+    private final int regions;
+    private Transport transport = Transport.SOCKET;
+    private int basePort = 47_000;
+    private double halo;
+    private double gravityX;
+    private double gravityY;
+    private double restitution;
+    private int solverIterations = 8;
+
+    /**
+     * Creates a decomposition.
+     *
+     * @param regions the number of regions
+     * @throws IllegalArgumentException if the number of regions is not positive
+     */
+    public DomainDecomposition(int regions) {
+        if (regions < 1) {
+            throw new IllegalArgumentException("Number of regions must be positive.");
+        }
+        this.regions = regions;
+    }
+
+    public void setTransport(Transport transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * Sets the port of region 0 for the socket transport; region {@code r} listens on {@code basePort + r}.
+     *
+     * @param basePort the first port
+     */
+    public void setBasePort(int basePort) {
+        this.basePort = basePort;
+    }
+
+    /**
+     * Sets the halo width. The default, 0, uses {@code solverIterations + 1} times the largest
+     * contact distance in the scene, which reproduces a single-process run exactly.
+     *
+     * @param halo the halo width
+     */
+    public void setHalo(double halo) {
+        this.halo = halo;
+    }
+
+    public void setGravity(double gx, double gy) {
+        this.gravityX = gx;
+        this.gravityY = gy;
+    }
+
+    public void setRestitution(double restitution) {
+        this.restitution = restitution;
+    }
+
+    public void setSolverIterations(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("Solver needs at least one iteration.");
+        }
+        this.solverIterations = iterations;
+    }
+
+    /**
+     * Places region borders at quantiles of the bodies' x positions.
+     *
+     * @param scene the scene
+     * @return {@code regions - 1} ascending borders
+     */
+    public double[] borders(Matrix scene) {
+        double[][] rows = sceneRows(scene);
+        double[] xs = new double[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            xs[i] = rows[i][0];
+        }
+        return borders(xs);
+    }
+
+    /**
+     * Places region borders at quantiles of x positions; sorts the array.
+     */
+    private double[] borders(double[] xs) {
+        Arrays.sort(xs);
+        double[] borders = new double[regions - 1];
+        for (int r = 1; r < regions; r++) {
+            double border = xs.length == 0 ? r : xs[(int) ((long) xs.length * r / regions)];
+            if (r > 1 && !(border > borders[r - 2])) {
+                border = Math.nextUp(borders[r - 2]);
+            }
+            borders[r - 1] = border;
+        }
+        return borders;
+    }
+
+    /**
+     * Runs every region on its own thread of this JVM, connected by the configured transport.
+     *
+     * @param scene the scene
+     * @param steps the number of steps
+     * @param dt    the time step
+     * @return the final state, in scene layout
+     * @throws IOException if a transport fails
+     * @throws InterruptedException if interrupted while waiting for the regions
+     * @throws IllegalArgumentException if an interior region would be narrower than the halo
+     */
+    public Matrix runInProcess(Matrix scene, int steps, double dt) throws IOException, InterruptedException {
+        double[] borders = borders(scene);
+        double haloWidth = haloFor(maxRadius(scene));
+        checkStripWidths(borders, haloWidth);
+        Path mailboxes = transport == Transport.MAPPED_FILE ? Files.createTempDirectory("halo") : null;
+        Matrix[] states = new Matrix[regions];
+        Throwable[] failures = new Throwable[regions];
+        Thread[] threads = new Thread[regions];
+        try {
+            for (int r = 0; r < regions; r++) {
+                int region = r;
+                threads[r] = new Thread(() -> {
+                    try (HaloTransport link = openTransport(region, mailboxes)) {
+                        RegionWorker worker = newWorker(region, borders, haloWidth, link);
+                        worker.addSceneRows(scene, 0);
+                        worker.start();
+                        for (int s = 0; s < steps; s++) {
+                            worker.step(dt);
+                        }
+                        states[region] = worker.getState();
+                    } catch (Throwable t) {
+                        failures[region] = t;
+                    }
+                }, "region-" + r);
+                threads[r].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } finally {
+            IOException failure = null;
+            for (int r = 0; r < regions && failure == null; r++) {
+                if (failures[r] != null) {
+                    failure = new IOException("Region " + r + " failed.", failures[r]);
+                }
+            }
+            // A region that failed early leaves its peers' mailboxes behind; a cleanup error must not hide that failure.
+            try {
+                deleteRecursively(mailboxes);
+            } catch (IOException e) {
+                if (failure == null) {
+                    throw e;
+                }
+                failure.addSuppressed(e);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+        return merge(states, scene.getRows());
+    }
+
+    /**
+     * Runs every region as a separate JVM process on this machine, using the current class path.
+     * The scene is written to the work directory and each process reads the rows of its own strip.
+     *
+     * @param scene         the scene
+     * @param steps         the number of steps
+     * @param dt            the time step
+     * @param workDirectory a directory for the scene, results and mailbox files
+     * @return the final state, in scene layout
+     * @throws IOException if a process fails or its results cannot be read
+     * @throws InterruptedException if interrupted while waiting for the processes
+     * @throws IllegalArgumentException if an interior region would be narrower than the halo
+     */
+    public Matrix runProcesses(Matrix scene, int steps, double dt, Path workDirectory)
+            throws IOException, InterruptedException {
+        Files.createDirectories(workDirectory);
+        Path scenePath = workDirectory.resolve("scene.advm");
+        MatrixIO.writeBinary(scene, scenePath);
+        Path[] outputs = launch(scenePath, borders(scene), haloFor(maxRadius(scene)), steps, dt, workDirectory);
+        Matrix[] states = new Matrix[regions];
+        for (int r = 0; r < regions; r++) {
+            states[r] = MatrixIO.readBinary(outputs[r]);
+        }
+        return merge(states, scene.getRows());
+    }
+
+    /**
+     * Runs every region as a separate JVM process on a scene file and writes the merged final state
+     * to a file. This JVM keeps only the x positions of the scene, to place the borders, and streams
+     * the region results into the output, so the scene may be larger than its heap.
+     *
+     * @param scene         a binary matrix file (see {@link MatrixIO}) in scene layout
+     * @param steps         the number of steps
+     * @param dt            the time step
+     * @param workDirectory a directory for results and mailbox files
+     * @param output        the binary matrix file that receives the final state, in scene layout
+     * @throws IOException if the scene cannot be read, a process fails or the results cannot be written
+     * @throws InterruptedException if interrupted while waiting for the processes
+     * @throws IllegalArgumentException if the scene has the wrong number of columns or an interior
+     *         region would be narrower than the halo
+     */
+    public void runProcesses(Path scene, int steps, double dt, Path workDirectory, Path output)
+            throws IOException, InterruptedException {
+        long[] size = MatrixIO.readBinaryDimensions(scene);
+        if (size[1] != RegionWorker.SCENE_COLUMNS) {
+            throw new IllegalArgumentException("Scene matrix must have " + RegionWorker.SCENE_COLUMNS + " columns.");
+        }
+        long bodies = size[0];
+        double[] xs = new double[(int) bodies];
+        double[] maxRadius = new double[1];
+        MatrixIO.readBinaryChunks(scene, RegionWorker.SCENE_CHUNK_ROWS, (rows, firstRow) -> {
+            double[][] values = rows.rawValues();
+            for (int i = 0; i < values.length; i++) {
+                xs[(int) firstRow + i] = values[i][0];
+                maxRadius[0] = Math.max(maxRadius[0], values[i][4]);
+            }
+        });
+        Files.createDirectories(workDirectory);
+        Path[] outputs = launch(scene, borders(xs), haloFor(maxRadius[0]), steps, dt, workDirectory);
+
+        long[] seen = new long[1];
+        try (MatrixIO.BinaryRowWriter writer = new MatrixIO.BinaryRowWriter(output, bodies, RegionWorker.SCENE_COLUMNS)) {
+            for (Path regionOutput : outputs) {
+                MatrixIO.readBinaryChunks(regionOutput, RegionWorker.SCENE_CHUNK_ROWS, (rows, firstRow) -> {
+                    double[][] values = rows.rawValues();
+                    // The first row of every region result is its summary row.
+                    for (int i = firstRow == 0 ? 1 : 0; i < values.length; i++) {
+                        writer.writeRow(bodyId(values[i], bodies), values[i], 1);
+                        seen[0]++;
+                    }
+                });
+            }
+        }
+        if (seen[0] != bodies) {
+            throw new IOException("Regions reported " + seen[0] + " bodies, expected " + bodies + ".");
+        }
+    }
+
+    /**
+     * Starts one worker process per region on a scene file and waits for all of them.
+     *
+     * @return the result file of every region
+     */
+    private Path[] launch(Path scenePath, double[] borders, double haloWidth, int steps, double dt, Path workDirectory)
+            throws IOException, InterruptedException {
+        checkStripWidths(borders, haloWidth);
+        // A fresh directory per run, so mailboxes of an earlier run that was killed are never reused.
+        Path mailboxes = transport == Transport.MAPPED_FILE ? Files.createTempDirectory(workDirectory, "mailboxes") : null;
+        String transportSpec = transport == Transport.SOCKET ? "socket:" + basePort : "mmap:" + mailboxes;
+        StringJoiner borderSpec = new StringJoiner(",");
+        for (double border : borders) {
+            borderSpec.add(Double.toString(border));
+        }
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+
+        List<Process> processes = new ArrayList<>(regions);
+        Path[] outputs = new Path[regions];
+        try {
+            for (int r = 0; r < regions; r++) {
+                outputs[r] = workDirectory.resolve("region-" + r + ".advm");
+                ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                        RegionWorker.class.getName(), Integer.toString(r),
+                        regions == 1 ? "-" : borderSpec.toString(), transportSpec, scenePath.toString(),
+                        Integer.toString(steps), Double.toString(dt), Double.toString(haloWidth),
+                        outputs[r].toString(), Double.toString(gravityX), Double.toString(gravityY),
+                        Double.toString(restitution), Integer.toString(solverIterations));
+                builder.redirectErrorStream(true);
+                builder.redirectOutput(workDirectory.resolve("region-" + r + ".log").toFile());
+                processes.add(builder.start());
+            }
+            for (int r = 0; r < regions; r++) {
+                int exit = processes.get(r).waitFor();
+                if (exit != 0) {
+                    throw new IOException(String.format(Locale.ROOT, "Region %d exited with status %d, see %s",
+                            r, exit, workDirectory.resolve("region-" + r + ".log")));
+                }
+            }
+        } finally {
+            for (Process process : processes) {
+                process.destroy();
+            }
+            for (Process process : processes) {
+                process.waitFor();
+            }
+            deleteRecursively(mailboxes);
+        }
+        return outputs;
+    }
+
+    /**
+     * Runs the scene in a single {@link PhysicsWorld} with the same settings and sleeping disabled.
+     *
+     * @param scene the scene
+     * @param steps the number of steps
+     * @param dt    the time step
+     * @return the final state, in scene layout
+     */
+    public Matrix runSingle(Matrix scene, int steps, double dt) {
+        double[][] rows = sceneRows(scene);
+        PhysicsWorld world = new PhysicsWorld();
+        world.setSleepingEnabled(false);
+        world.setGravity(gravityX, gravityY);
+        world.setRestitution(restitution);
+        world.setSolverIterations(solverIterations);
+        for (double[] r : rows) {
+            int id = world.addBody(r[0], r[1], r[4], r[5]);
+            world.setVelocity(id, r[2], r[3]);
+        }
+        for (int s = 0; s < steps; s++) {
+            world.step(dt);
+        }
+        Matrix result = new Matrix(rows.length, RegionWorker.SCENE_COLUMNS);
+        double[][] out = result.rawValues();
+        for (int i = 0; i < rows.length; i++) {
+            out[i][0] = world.x(i);
+            out[i][1] = world.y(i);
+            out[i][2] = world.vx(i);
+            out[i][3] = world.vy(i);
+            out[i][4] = rows[i][4];
+            out[i][5] = rows[i][5];
+        }
+        return result;
+    }
+
+    private RegionWorker newWorker(int region, double[] borders, double haloWidth, HaloTransport link) {
+        RegionWorker worker = new RegionWorker(region, borders, haloWidth, link);
+        worker.setGravity(gravityX, gravityY);
+        worker.setRestitution(restitution);
+        worker.setSolverIterations(solverIterations);
+        return worker;
+    }
+
+    private HaloTransport openTransport(int region, Path mailboxes) throws IOException {
+        if (transport == Transport.MAPPED_FILE) {
+            return new MappedFileHaloTransport(mailboxes, region, regions);
+        }
+        return SocketHaloTransport.connect(region, regions, basePort);
+    }
+
+    /**
+     * Rejects borders that leave an interior region narrower than the halo: its neighbours would
+     * then need ghosts from two regions away, which are never sent.
+     */
+    private static void checkStripWidths(double[] borders, double haloWidth) {
+        for (int r = 1; r < borders.length; r++) {
+            double width = borders[r] - borders[r - 1];
+            if (width < haloWidth) {
+                throw new IllegalArgumentException(String.format(Locale.ROOT,
+                        "Region %d is %.4g wide, narrower than the halo of %.4g; use fewer regions.", r, width, haloWidth));
+            }
+        }
+    }
+
+    private double haloFor(double maxRadius) {
+        return halo > 0 ? halo : (solverIterations + 1) * 2 * maxRadius;
+    }
+
+    private static double maxRadius(Matrix scene) {
+        double maxRadius = 0;
+        for (double[] r : sceneRows(scene)) {
+            maxRadius = Math.max(maxRadius, r[4]);
+        }
+        return maxRadius;
+    }
+
+    private static Matrix merge(Matrix[] states, long bodies) throws IOException {
+        Matrix result = new Matrix(bodies, RegionWorker.SCENE_COLUMNS);
+        double[][] out = result.rawValues();
+        long seen = 0;
+        for (Matrix state : states) {
+            double[][] rows = state.rawValues();
+            for (int i = 1; i < rows.length; i++) {
+                double[] r = rows[i];
+                System.arraycopy(r, 1, out[(int) bodyId(r, bodies)], 0, RegionWorker.SCENE_COLUMNS);
+                seen++;
+            }
+        }
+        if (seen != bodies) {
+            throw new IOException("Regions reported " + seen + " bodies, expected " + bodies + ".");
+        }
+        return result;
+    }
+
+    private static long bodyId(double[] resultRow, long bodies) throws IOException {
+        long id = (long) resultRow[0];
+        if (id < 0 || id >= bodies) {
+            throw new IOException("Region reported unknown body id " + id + ".");
+        }
+        return id;
+    }
+
+    /**
+     * Deletes a directory and everything in it; does nothing for {@code null}.
+     */
+    private static void deleteRecursively(Path directory) throws IOException {
+        if (directory == null || !Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private static double[][] sceneRows(Matrix scene) {
+        if (scene.getCols() != RegionWorker.SCENE_COLUMNS) {
+            throw new IllegalArgumentException("Scene matrix must have " + RegionWorker.SCENE_COLUMNS + " columns.");
+        }
+        return scene.rawValues();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("DomainDecomposition(regions: %d, transport: %s)", regions, transport);
+    }
+}
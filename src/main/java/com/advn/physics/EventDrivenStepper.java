@@ -0,0 +1,478 @@
+package com.advn.physics;
+
+import java.util.Arrays;
+
+/**
+ * Event-driven stepping for a {@link PhysicsWorld}: bodies fly on straight lines between impacts,
+ * and time jumps from one predicted impact to the next instead of advancing in fixed steps.
+ *
+ * <p>For each pair, the stepper first checks whether the relative motion over the remaining interval
+ * brings the bodies within contact distance at all. This is the closest-point-on-segment test of
+ * {@link PhysicsVector#closestPointOnLineSegment}, applied to the segment traced by one center
+ * relative to the other. Only pairs that pass get the exact impact time, the smaller root of
+ * {@code |dp + dv t| = r}. Impacts are kept in a binary heap of primitive arrays keyed by time.
+ *
+ * <p>The first prediction pass sorts the bodies by the x-extent they sweep over the interval. The
+ * same extents are also entered into a uniform grid over x. After an impact, each of the two bodies
+ * adds its new extent to the grid and is tested only against bodies in the cells it covers. A body's
+ * entries only ever grow, so its cells always cover the rest of its path. The cost of an impact
+ * then depends on the bodies near the two paths, not on the size of the scene.
+ *
+ * <p>Bodies are advanced lazily. Each body keeps its own local time and is moved only when it
+ * takes part in an impact, plus once at the end of {@link #advance(double)}. Every impact bumps
+ * the version of both bodies, which invalidates their other queued impacts without searching the
+ * heap. A sparse scene of fast bodies therefore costs a few position updates per impact instead
+ * of one per body per fixed step, and no impact can tunnel.
+ *
+ * <p>Impacts use the world's restitution and mass; static bodies act as fixed obstacles. Gravity,
+ * joints and pending forces are not modelled, so the world must have zero gravity and no joints.
+ */
+public class EventDrivenStepper {
+    private static final int INITIAL_CAPACITY = 16;
+    // Pairs whose approach direction is this close to perpendicular are treated as not approaching,
+    // so resting contacts cannot produce an endless series of zero-time impacts.
+    private static final double APPROACH_EPSILON = 1e-9;
+
+    private final PhysicsWorld world;
+    private double time;
+    private int maxEventsPerAdvance = 1_000_000;
+
+    private double[] bodyTime = new double[INITIAL_CAPACITY];
+    private int[] version = new int[INITIAL_CAPACITY];
+    private double[] sweepMin = new double[INITIAL_CAPACITY];
+    private double[] sweepMax = new double[INITIAL_CAPACITY];
+    private int[] order = new int[INITIAL_CAPACITY];
+
+    // Uniform grid over x of swept extents: per-cell linked lists of body entries.
+    private int gridCells;
+    private double gridMin;
+    private double gridScale;
+    private int[] cellHead = new int[INITIAL_CAPACITY];
+    private int gridEntries;
+    private int[] entryBody = new int[INITIAL_CAPACITY];
+    private int[] entryNext = new int[INITIAL_CAPACITY];
+    private int[] visited = new int[INITIAL_CAPACITY];
+    private int visitStamp;
+
+    // Binary min-heap of predicted impacts.
+    private int heapSize;
+    private double[] heapTime = new double[INITIAL_CAPACITY];
+    private int[] heapA = new int[INITIAL_CAPACITY];
+    private int[] heapB = new int[INITIAL_CAPACITY];
+    private int[] heapVersionA = new int[INITIAL_CAPACITY];
+    private int[] heapVersionB = new int[INITIAL_CAPACITY];
+
+    private long impacts;
+    private long positionUpdates;
+    private long pairsTested;
+
+    /**
+     * Creates a stepper for a world. The world keeps its own state; the stepper only moves its bodies.
+     *
+     * @param world the world to advance
+     */
+    public EventDrivenStepper(PhysicsWorld world) {
+        this.world = world;
+    }
+
+    /**
+     * Advances the world by a time interval, resolving every impact inside it in time order.
+     * If more than the event limit of impacts fall into one call, the rest of the interval is flown
+     * without collisions.
+     *
+     * @param duration the time interval
+     * @return the number of impacts resolved
+     * @throws IllegalArgumentException if the duration is negative
+     * @throws IllegalStateException if the world has gravity or joints
+     */
+    public int advance(double duration) {
+        if (duration < 0) {
+            throw new IllegalArgumentException("Duration cannot be negative.");
+        }
+        PhysicsVector gravity = world.getGravity();
+        if (gravity.getX() != 0 || gravity.getY() != 0 || world.getJointCount() != 0) {
+            throw new IllegalStateException("Event-driven stepping requires zero gravity and no joints.");
+        }
+        long stepStart = PhysicsMetrics.start();
+        long allocStart = PhysicsMetrics.allocatedBytes();
+        long pairsBefore = pairsTested;
+
+        int n = world.getBodyCount();
+        ensureCapacity(n);
+        double end = time + duration;
+        Arrays.fill(bodyTime, 0, n, time);
+        heapSize = 0;
+
+        long phase = PhysicsMetrics.start();
+        predictAll(n, end);
+        PhysicsMetrics.stop(PhysicsPhase.BROADPHASE, phase);
+
+        int resolved = 0;
+        while (heapSize > 0 && resolved < maxEventsPerAdvance) {
+            double t = heapTime[0];
+            int a = heapA[0];
+            int b = heapB[0];
+            boolean current = heapVersionA[0] == version[a] && heapVersionB[0] == version[b];
+            pop();
+            if (!current) {
+                continue;
+            }
+            phase = PhysicsMetrics.start();
+            moveTo(a, t);
+            moveTo(b, t);
+            if (resolve(a, b)) {
+                resolved++;
+            }
+            version[a]++;
+            version[b]++;
+            PhysicsMetrics.stop(PhysicsPhase.COLLISION, phase);
+
+            phase = PhysicsMetrics.start();
+            predictFor(a, t, end);
+            predictFor(b, t, end);
+            PhysicsMetrics.stop(PhysicsPhase.BROADPHASE, phase);
+        }
+        heapSize = 0;
+
+        phase = PhysicsMetrics.start();
+        for (int i = 0; i < n; i++) {
+            moveTo(i, end);
+        }
+        PhysicsMetrics.stop(PhysicsPhase.INTEGRATION, phase);
+        time = end;
+        impacts += resolved;
+        PhysicsMetrics.recordStep(stepStart, allocStart, n, pairsTested - pairsBefore, 0);
+        return resolved;
+    }
+
+    /**
+     * Gets the time simulated by this stepper so far.
+     *
+     * @return the elapsed time
+     */
+    public double getTime() {
+        return time;
+    }
+
+    public long getImpactCount() {
+        return impacts;
+    }
+
+    /**
+     * Gets the number of times a body position was updated. A fixed-step integrator makes one update
+     * per moving body per step.
+     *
+     * @return the number of position updates
+     */
+    public long getPositionUpdateCount() {
+        return positionUpdates;
+    }
+
+    public long getPairsTested() {
+        return pairsTested;
+    }
+
+    /**
+     * Limits the number of impacts resolved in one call to {@link #advance(double)}. This guards
+     * against inelastic collapse, where impacts pile up at one instant.
+     *
+     * @param maxEvents the maximum number of impacts per call
+     * @throws IllegalArgumentException if the limit is not positive
+     */
+    public void setMaxEventsPerAdvance(int maxEvents) {
+        if (maxEvents < 1) {
+            throw new IllegalArgumentException("Event limit must be positive.");
+        }
+        this.maxEventsPerAdvance = maxEvents;
+    }
+
+    /**
+     * Predicts impacts for all pairs whose swept x-extents over the interval overlap.
+     */
+    private void predictAll(int n, double end) {
+        double span = end - time;
+        for (int i = 0; i < n; i++) {
+            double x0 = world.x(i);
+            double x1 = x0 + world.vx(i) * span;
+            double r = world.radius(i);
+            sweepMin[i] = Math.min(x0, x1) - r;
+            sweepMax[i] = Math.max(x0, x1) + r;
+            order[i] = i;
+        }
+        buildGrid(n);
+        PhysicsWorld.sortByKey(order, 0, n, sweepMin);
+        for (int k = 0; k < n; k++) {
+            int a = order[k];
+            double maxX = sweepMax[a];
+            for (int m = k + 1; m < n; m++) {
+                int b = order[m];
+                if (sweepMin[b] > maxX) {
+                    break;
+                }
+                predict(a, b, time, end);
+            }
+        }
+    }
+
+    /**
+     * Enters the swept extents of all bodies into the grid. Cells are about as wide as the average
+     * extent, so a typical body covers one or two cells; there are at most twice as many cells as bodies.
+     */
+    private void buildGrid(int n) {
+        double lo = Double.POSITIVE_INFINITY;
+        double hi = Double.NEGATIVE_INFINITY;
+        double widths = 0;
+        for (int i = 0; i < n; i++) {
+            lo = Math.min(lo, sweepMin[i]);
+            hi = Math.max(hi, sweepMax[i]);
+            widths += sweepMax[i] - sweepMin[i];
+        }
+        double range = hi - lo;
+        int cells = 1;
+        if (range > 0 && range < Double.POSITIVE_INFINITY) {
+            double cellWidth = Math.max(widths / n, range / (2.0 * n));
+            cells = (int) Math.max(1, Math.min(2L * n, (long) Math.ceil(range / cellWidth)));
+        }
+        gridCells = cells;
+        gridMin = lo;
+        gridScale = cells > 1 ? cells / range : 0;
+        if (cellHead.length < cells) {
+            cellHead = new int[Math.max(cells, cellHead.length * 2)];
+        }
+        Arrays.fill(cellHead, 0, cells, -1);
+        gridEntries = 0;
+        Arrays.fill(visited, 0, n, 0);
+        visitStamp = 0;
+        for (int i = 0; i < n; i++) {
+            register(i, sweepMin[i], sweepMax[i]);
+        }
+    }
+
+    private int cell(double x) {
+        double c = (x - gridMin) * gridScale;
+        return c < 1 ? 0 : (int) Math.min(c, gridCells - 1);
+    }
+
+    private void register(int body, double min, double max) {
+        for (int c = cell(min), last = cell(max); c <= last; c++) {
+            if (gridEntries == entryBody.length) {
+                entryBody = Arrays.copyOf(entryBody, gridEntries * 2);
+                entryNext = Arrays.copyOf(entryNext, gridEntries * 2);
+            }
+            entryBody[gridEntries] = body;
+            entryNext[gridEntries] = cellHead[c];
+            cellHead[c] = gridEntries++;
+        }
+    }
+
+    /**
+     * Predicts impacts of one body, which has just been moved to time {@code t}, against the bodies
+     * in the grid cells its new path covers.
+     */
+    private void predictFor(int a, double t, double end) {
+        double span = end - t;
+        double ax1 = world.x(a) + world.vx(a) * span;
+        double r = world.radius(a);
+        double minA = Math.min(world.x(a), ax1) - r;
+        double maxA = Math.max(world.x(a), ax1) + r;
+        register(a, minA, maxA);
+        if (visitStamp == Integer.MAX_VALUE) {
+            Arrays.fill(visited, 0);
+            visitStamp = 0;
+        }
+        int stamp = ++visitStamp;
+        visited[a] = stamp;
+        for (int c = cell(minA), last = cell(maxA); c <= last; c++) {
+            for (int e = cellHead[c]; e >= 0; e = entryNext[e]) {
+                int b = entryBody[e];
+                if (visited[b] == stamp) {
+                    continue;
+                }
+                visited[b] = stamp;
+                double bx0 = world.x(b) + world.vx(b) * (t - bodyTime[b]);
+                double bx1 = bx0 + world.vx(b) * span;
+                double rb = world.radius(b);
+                if (Math.min(bx0, bx1) - rb > maxA || Math.max(bx0, bx1) + rb < minA) {
+                    continue;
+                }
+                predict(a, b, t, end);
+            }
+        }
+    }
+
+    /**
+     * Schedules the impact of two bodies if it happens between {@code t} and {@code end}.
+     */
+    private void predict(int a, int b, double t, double end) {
+        if (world.invMass(a) == 0 && world.invMass(b) == 0) {
+            return;
+        }
+        pairsTested++;
+        double ta = t - bodyTime[a];
+        double tb = t - bodyTime[b];
+        double dpx = (world.x(b) + world.vx(b) * tb) - (world.x(a) + world.vx(a) * ta);
+        double dpy = (world.y(b) + world.vy(b) * tb) - (world.y(a) + world.vy(a) * ta);
+        double dvx = world.vx(b) - world.vx(a);
+        double dvy = world.vy(b) - world.vy(a);
+        double dvv = dvx * dvx + dvy * dvy;
+        double dpp = dpx * dpx + dpy * dpy;
+        double dpv = dpx * dvx + dpy * dvy;
+        if (dpv >= -APPROACH_EPSILON * Math.sqrt(dvv * dpp)) {
+            return; // Not approaching.
+        }
+
+        // Closest point of the relative path over the remaining interval to the origin.
+        double span = end - t;
+        double s = Math.min(1, -dpv / (dvv * span));
+        double cx = dpx + dvx * span * s;
+        double cy = dpy + dvy * span * s;
+        double r = world.radius(a) + world.radius(b);
+        if (cx * cx + cy * cy > r * r) {
+            return;
+        }
+
+        double c = dpp - r * r;
+        double dt = 0;
+        if (c > 0) {
+            double discriminant = dpv * dpv - dvv * c;
+            if (discriminant < 0) {
+                return;
+            }
+            // Smaller root of dvv t^2 + 2 dpv t + c = 0, in the form that avoids cancellation.
+            dt = c / (-dpv + Math.sqrt(discriminant));
+        }
+        if (dt > span) {
+            return;
+        }
+        push(t + dt, a, b);
+    }
+
+    /**
+     * Applies the impact impulse along the line of centers.
+     *
+     * @return true if the bodies were approaching
+     */
+    private boolean resolve(int a, int b) {
+        double nx = world.x(b) - world.x(a);
+        double ny = world.y(b) - world.y(a);
+        double dist = Math.sqrt(nx * nx + ny * ny);
+        if (dist == 0) {
+            return false;
+        }
+        nx /= dist;
+        ny /= dist;
+        double vn = (world.vx(b) - world.vx(a)) * nx + (world.vy(b) - world.vy(a)) * ny;
+        if (vn >= 0) {
+            return false;
+        }
+        double ia = world.invMass(a);
+        double ib = world.invMass(b);
+        double j = -(1 + world.getRestitution()) * vn / (ia + ib);
+        world.addVelocity(a, -j * ia * nx, -j * ia * ny);
+        world.addVelocity(b, j * ib * nx, j * ib * ny);
+        if (ia != 0) {
+            world.wake(a);
+        }
+        if (ib != 0) {
+            world.wake(b);
+        }
+        return true;
+    }
+
+    private void moveTo(int body, double t) {
+        double dt = t - bodyTime[body];
+        bodyTime[body] = t;
+        if (dt == 0 || (world.vx(body) == 0 && world.vy(body) == 0)) {
+            return;
+        }
+        world.translate(body, world.vx(body) * dt, world.vy(body) * dt);
+        positionUpdates++;
+    }
+
+    private void push(double t, int a, int b) {
+        if (heapSize == heapTime.length) {
+            int capacity = heapSize * 2;
+            heapTime = Arrays.copyOf(heapTime, capacity);
+            heapA = Arrays.copyOf(heapA, capacity);
+            heapB = Arrays.copyOf(heapB, capacity);
+            heapVersionA = Arrays.copyOf(heapVersionA, capacity);
+            heapVersionB = Arrays.copyOf(heapVersionB, capacity);
+        }
+        int c = heapSize++;
+        while (c > 0) {
+            int parent = (c - 1) >>> 1;
+            if (heapTime[parent] <= t) {
+                break;
+            }
+            copyEntry(parent, c);
+            c = parent;
+        }
+        heapTime[c] = t;
+        heapA[c] = a;
+        heapB[c] = b;
+        heapVersionA[c] = version[a];
+        heapVersionB[c] = version[b];
+    }
+
+    private void pop() {
+        int last = --heapSize;
+        if (last == 0) {
+            return;
+        }
+        double t = heapTime[last];
+        int a = heapA[last];
+        int b = heapB[last];
+        int va = heapVersionA[last];
+        int vb = heapVersionB[last];
+        int c = 0;
+        while (true) {
+            int child = 2 * c + 1;
+            if (child >= last) {
+                break;
+            }
+            if (child + 1 < last && heapTime[child + 1] < heapTime[child]) {
+                child++;
+            }
+            if (t <= heapTime[child]) {
+                break;
+            }
+            copyEntry(child, c);
+            c = child;
+        }
+        heapTime[c] = t;
+        heapA[c] = a;
+        heapB[c] = b;
+        heapVersionA[c] = va;
+        heapVersionB[c] = vb;
+    }
+
+    private void copyEntry(int from, int to) {
+        heapTime[to] = heapTime[from];
+        heapA[to] = heapA[from];
+        heapB[to] = heapB[from];
+        heapVersionA[to] = heapVersionA[from];
+        heapVersionB[to] = heapVersionB[from];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= bodyTime.length) {
+            return;
+        }
+        int n = Math.max(capacity, bodyTime.length * 2);
+        bodyTime = Arrays.copyOf(bodyTime, n);
+        version = Arrays.copyOf(version, n);
+        sweepMin = Arrays.copyOf(sweepMin, n);
+        sweepMax = Arrays.copyOf(sweepMax, n);
+        order = Arrays.copyOf(order, n);
+        visited = Arrays.copyOf(visited, n);
+        if (entryBody.length < 2 * n) {
+            entryBody = Arrays.copyOf(entryBody, 2 * n);
+            entryNext = Arrays.copyOf(entryNext, 2 * n);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("EventDrivenStepper(time: %.3f, impacts: %d, position updates: %d)", time, impacts, positionUpdates);
+    }
+}
@@ -0,0 +1,297 @@
+package com.advn.physics;
+
+/**
+ * Polynomial approximations of the trigonometric functions used by {@link PhysicsVector}, with
+ * scalar and bulk array versions.
+ *
+ * <p>Maximum absolute error against {@link Math}, measured over the full input domain:
+ * <ul>
+ *   <li>{@link #sin(double)}, {@link #cos(double)}: 2e-9 for {@code |x| <= 1e6}; larger or non-finite
+ *       arguments are delegated to {@link Math}.</li>
+ *   <li>{@link #atan(double)}, {@link #atan2(double, double)}: 5e-10.</li>
+ *   <li>{@link #acos(double)}: 1e-9.</li>
+ * </ul>
+ * Special values (NaN, infinities, signed zeros) follow {@link Math}.
+ *
+ * <p>Once {@link #setEnabled(boolean)} has been called with true, {@link PhysicsVector#angleBetween},
+ * {@link PhysicsVector#slerp} and {@link PhysicsVector#toPolar} use {@link #acos(double)} and
+ * {@link #atan2(double, double)}, which are several times faster than {@link Math}. The JIT already
+ * compiles {@link Math#sin(double)} and {@link Math#cos(double)} to intrinsics on common platforms, so
+ * {@link PhysicsVector} keeps using them; {@link #sin(double)} and {@link #cos(double)} are offered for
+ * platforms without those intrinsics. The switch is meant to be set once at startup; it is volatile,
+ * so threads that are already running see a later change.
+ */
+public final class FastTrig {
+    /** Maximum absolute error of {@link #sin(double)} and {@link #cos(double)}. */
+    public static final double SIN_COS_MAX_ERROR = 2e-9;
+    /** Maximum absolute error of {@link #atan(double)} and {@link #atan2(double, double)}. */
+    public static final double ATAN_MAX_ERROR = 5e-10;
+    /** Maximum absolute error of {@link #acos(double)}. */
+    public static final double ACOS_MAX_ERROR = 1e-9;
+
+    private static final double REDUCTION_LIMIT = 1e6;
+    private static final double TWO_OVER_PI = 0.6366197723675814;
+    // pi/2 split so that k * PIO2_HI is exact for |k| < 2^20 (Cody-Waite reduction).
+    private static final double PIO2_HI = 1.57079632673412561417e+00;
+    private static final double PIO2_LO = 6.07710050650619224932e-11;
+    private static final double PI_OVER_2 = Math.PI / 2;
+    private static final double PI_OVER_4 = Math.PI / 4;
+    private static final double TAN_PI_OVER_8 = 0.41421356237309503;
+
+    // Taylor coefficients; on |r| <= pi/4 the truncation error is below r^11/11! and r^12/12!.
+    private static final double S1 = -1.0 / 6;
+    private static final double S2 = 1.0 / 120;
+    private static final double S3 = -1.0 / 5040;
+    private static final double S4 = 1.0 / 362880;
+    private static final double C1 = -1.0 / 2;
+    private static final double C2 = 1.0 / 24;
+    private static final double C3 = -1.0 / 720;
+    private static final double C4 = 1.0 / 40320;
+    private static final double C5 = -1.0 / 3628800;
+
+    private static volatile boolean enabled;
+
+    private FastTrig() {
+    }
+
+    /**
+     * Switches {@link PhysicsVector} between these approximations and {@link Math} for acos and atan2.
+     *
+     * @param fast true to use the approximations
+     */
+    public static void setEnabled(boolean fast) {
+        enabled = fast;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Approximates {@link Math#sin(double)}.
+     *
+     * @param x the angle in radians
+     * @return the sine
+     */
+    public static double sin(double x) {
+        if (!(Math.abs(x) <= REDUCTION_LIMIT) || x == 0) {
+            return Math.sin(x);
+        }
+        double k = Math.rint(x * TWO_OVER_PI);
+        double r = (x - k * PIO2_HI) - k * PIO2_LO;
+        return quadrant(r, (int) k);
+    }
+
+    /**
+     * Approximates {@link Math#cos(double)}.
+     *
+     * @param x the angle in radians
+     * @return the cosine
+     */
+    public static double cos(double x) {
+        if (!(Math.abs(x) <= REDUCTION_LIMIT)) {
+            return Math.cos(x);
+        }
+        double k = Math.rint(x * TWO_OVER_PI);
+        double r = (x - k * PIO2_HI) - k * PIO2_LO;
+        // cos(x) = sin(x + pi/2): one quadrant further along.
+        return quadrant(r, (int) k + 1);
+    }
+
+    /**
+     * Approximates {@link Math#atan(double)}.
+     *
+     * @param x the tangent
+     * @return the angle in radians, in [-pi/2, pi/2]
+     */
+    public static double atan(double x) {
+        if (Double.isNaN(x)) {
+            return x;
+        }
+        double t = Math.abs(x);
+        double result = t <= 1 ? atanUnit(t) : PI_OVER_2 - atanUnit(1 / t);
+        return Math.copySign(result, x);
+    }
+
+    /**
+     * Approximates {@link Math#atan2(double, double)}.
+     *
+     * @param y the ordinate
+     * @param x the abscissa
+     * @return the angle in radians, in [-pi, pi]
+     */
+    public static double atan2(double y, double x) {
+        double ay = Math.abs(y);
+        double ax = Math.abs(x);
+        if (!(ay < Double.POSITIVE_INFINITY && ax < Double.POSITIVE_INFINITY) || (ay == 0 && ax == 0)) {
+            return Math.atan2(y, x);
+        }
+        double result = ay <= ax ? atanUnit(ay / ax) : PI_OVER_2 - atanUnit(ax / ay);
+        if (x < 0) {
+            result = Math.PI - result;
+        }
+        return Math.copySign(result, y);
+    }
+
+    /**
+     * Approximates {@link Math#acos(double)}.
+     *
+     * @param x the cosine, in [-1, 1]
+     * @return the angle in radians, in [0, pi], or NaN if {@code x} is outside [-1, 1]
+     */
+    public static double acos(double x) {
+        if (!(Math.abs(x) <= 1)) {
+            return Double.NaN;
+        }
+        // acos(x) = 2 atan(sqrt((1 - x) / (1 + x))), written with atan2 so x = -1 needs no special case.
+        return 2 * atan2(Math.sqrt(1 - x), Math.sqrt(1 + x));
+    }
+
+    /**
+     * Computes {@link #sin(double)} for every element.
+     *
+     * @param angles the input angles in radians
+     * @param out    receives the sines; may be the same array as {@code angles}
+     */
+    public static void sin(double[] angles, double[] out) {
+        checkLengths(angles.length, out.length);
+        for (int i = 0; i < angles.length; i++) {
+            out[i] = sin(angles[i]);
+        }
+    }
+
+    /**
+     * Computes {@link #cos(double)} for every element.
+     *
+     * @param angles the input angles in radians
+     * @param out    receives the cosines; may be the same array as {@code angles}
+     */
+    public static void cos(double[] angles, double[] out) {
+        checkLengths(angles.length, out.length);
+        for (int i = 0; i < angles.length; i++) {
+            out[i] = cos(angles[i]);
+        }
+    }
+
+    /**
+     * Computes {@link #atan2(double, double)} for every pair of elements.
+     *
+     * @param ys  the ordinates
+     * @param xs  the abscissas
+     * @param out receives the angles
+     */
+    public static void atan2(double[] ys, double[] xs, double[] out) {
+        checkLengths(ys.length, xs.length);
+        checkLengths(ys.length, out.length);
+        for (int i = 0; i < ys.length; i++) {
+            out[i] = atan2(ys[i], xs[i]);
+        }
+    }
+
+    /**
+     * Computes {@link #acos(double)} for every element.
+     *
+     * @param values the cosines
+     * @param out    receives the angles; may be the same array as {@code values}
+     */
+    public static void acos(double[] values, double[] out) {
+        checkLengths(values.length, out.length);
+        for (int i = 0; i < values.length; i++) {
+            out[i] = acos(values[i]);
+        }
+    }
+
+    /**
+     * Converts Cartesian coordinates to polar form in bulk, as {@link PhysicsVector#toPolar()}.
+     *
+     * @param xs         the x coordinates
+     * @param ys         the y coordinates
+     * @param magnitudes receives the magnitudes
+     * @param angles     receives the angles in radians
+     */
+    public static void toPolar(double[] xs, double[] ys, double[] magnitudes, double[] angles) {
+        checkLengths(xs.length, ys.length);
+        checkLengths(xs.length, magnitudes.length);
+        checkLengths(xs.length, angles.length);
+        for (int i = 0; i < xs.length; i++) {
+            double x = xs[i];
+            double y = ys[i];
+            magnitudes[i] = Math.sqrt(x * x + y * y);
+            angles[i] = atan2(y, x);
+        }
+    }
+
+    /**
+     * Converts polar coordinates to Cartesian form in bulk, as {@link PhysicsVector#fromPolar(double, double)}.
+     *
+     * @param magnitudes the magnitudes
+     * @param angles     the angles in radians
+     * @param xs         receives the x coordinates
+     * @param ys         receives the y coordinates
+     */
+    public static void fromPolar(double[] magnitudes, double[] angles, double[] xs, double[] ys) {
+        checkLengths(magnitudes.length, angles.length);
+        checkLengths(magnitudes.length, xs.length);
+        checkLengths(magnitudes.length, ys.length);
+        for (int i = 0; i < magnitudes.length; i++) {
+            double m = magnitudes[i];
+            double a = angles[i];
+            xs[i] = m * cos(a);
+            ys[i] = m * sin(a);
+        }
+    }
+
+    /**
+     * Evaluates sin(q * pi/2 + r). Both polynomials are computed and selected without branching,
+     * which avoids mispredictions when consecutive angles fall in different quadrants.
+     */
+    private static double quadrant(double r, int q) {
+        double s = sinPoly(r);
+        double c = cosPoly(r);
+        double v = (q & 1) == 0 ? s : c;
+        return (q & 2) == 0 ? v : -v;
+    }
+
+    private static double sinPoly(double r) {
+        double r2 = r * r;
+        return r + r * r2 * (S1 + r2 * (S2 + r2 * (S3 + r2 * S4)));
+    }
+
+    private static double cosPoly(double r) {
+        double r2 = r * r;
+        return 1 + r2 * (C1 + r2 * (C2 + r2 * (C3 + r2 * (C4 + r2 * C5))));
+    }
+
+    /**
+     * atan on [0, 1]: arguments above tan(pi/8) are shifted by pi/4 so the series always sees |t| <= tan(pi/8).
+     */
+    private static double atanUnit(double t) {
+        if (t > TAN_PI_OVER_8) {
+            return PI_OVER_4 + atanSeries((t - 1) / (t + 1));
+        }
+        return atanSeries(t);
+    }
+
+    /**
+     * The odd series of atan up to t^19; for |t| <= tan(pi/8) the truncation error is below t^21/21 (about 5e-10).
+     */
+    private static double atanSeries(double t) {
+        double t2 = t * t;
+        double p = -1.0 / 19;
+        p = 1.0 / 17 + t2 * p;
+        p = -1.0 / 15 + t2 * p;
+        p = 1.0 / 13 + t2 * p;
+        p = -1.0 / 11 + t2 * p;
+        p = 1.0 / 9 + t2 * p;
+        p = -1.0 / 7 + t2 * p;
+        p = 1.0 / 5 + t2 * p;
+        p = -1.0 / 3 + t2 * p;
+        return t + t * t2 * p;
+    }
+
+    private static void checkLengths(int expected, int actual) {
+        if (expected != actual) {
+            throw new IllegalArgumentException("Array lengths do not match.");
+        }
+    }
+}
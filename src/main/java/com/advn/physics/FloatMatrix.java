@@ -0,0 +1,461 @@
+package com.advn.physics;
+
+/**
+ * Single-precision counterpart of {@link Matrix}. Values are kept in one row-major {@code float[]},
+ * which halves the memory footprint and lets the inner loops work on contiguous memory.
+ */
+public class FloatMatrix {
+    private final int rows;
+    private final int cols;
+    private final float[] values;
+
+    /**
+     * Creates a matrix with specified number of rows and columns.
+     *
+     * @param rows the number of rows
+     * @param cols the number of columns
+     */
+    public FloatMatrix(long rows, long cols) {
+        this.rows = (int) rows;
+        this.cols = (int) cols;
+        this.values = new float[this.rows * this.cols];
+    }
+
+    /**
+     * Creates a matrix from a 2D array.
+     *
+     * @param values 2D array representing matrix values
+     * @throws IllegalArgumentException if the array is null or empty
+     */
+    public FloatMatrix(float[][] values) {
+        if (values == null || values.length == 0 || values[0].length == 0) {
+            throw new IllegalArgumentException("Matrix cannot be null or empty.");
+        }
+        this.rows = values.length;
+        this.cols = values[0].length;
+        this.values = new float[rows * cols];
+        for (int i = 0; i < rows; i++) {
+            System.arraycopy(values[i], 0, this.values, i * cols, cols);
+        }
+    }
+
+    /**
+     * Creates a single-precision copy of a double-precision matrix. Values are rounded to the nearest float.
+     *
+     * @param matrix the matrix to convert
+     * @return the converted matrix
+     */
+    public static FloatMatrix fromMatrix(Matrix matrix) {
+        double[][] source = matrix.rawValues();
+        FloatMatrix result = new FloatMatrix(matrix.getRows(), matrix.getCols());
+        float[] target = result.values;
+        int cols = result.cols;
+        for (int i = 0; i < result.rows; i++) {
+            double[] row = source[i];
+            int offset = i * cols;
+            for (int j = 0; j < cols; j++) {
+                target[offset + j] = (float) row[j];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Converts this matrix to a double-precision {@link Matrix}.
+     *
+     * @return the converted matrix
+     */
+    public Matrix toMatrix() {
+        Matrix result = new Matrix(rows, cols);
+        double[][] target = result.rawValues();
+        for (int i = 0; i < rows; i++) {
+            int offset = i * cols;
+            double[] row = target[i];
+            for (int j = 0; j < cols; j++) {
+                row[j] = values[offset + j];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the number of rows in the matrix.
+     *
+     * @return number of rows
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Gets the number of columns in the matrix.
+     *
+     * @return number of columns
+     */
+    public long getCols() {
+        return cols;
+    }
+
+    /**
+     * Retrieves the value at a specified row and column.
+     *
+     * @param row the row index
+     * @param col the column index
+     * @return the value at the specified position
+     * @throws IndexOutOfBoundsException if indices are out of bounds
+     */
+    public float get(long row, long col) {
+        checkIndex(row, col);
+        return values[(int) row * cols + (int) col];
+    }
+
+    /**
+     * Sets the value at a specified row and column.
+     *
+     * @param row   the row index
+     * @param col   the column index
+     * @param value the value to set
+     * @throws IndexOutOfBoundsException if indices are out of bounds
+     */
+    public void set(long row, long col, float value) {
+        checkIndex(row, col);
+        values[(int) row * cols + (int) col] = value;
+    }
+
+    /**
+     * Checks if the given row and column indices are valid.
+     *
+     * @param row the row index
+     * @param col the column index
+     * @throws IndexOutOfBoundsException if indices are out of bounds
+     */
+    private void checkIndex(long row, long col) {
+        if (row < 0 || row >= rows || col < 0 || col >= cols) {
+            throw new IndexOutOfBoundsException("Invalid index: (" + row + ", " + col + ").");
+        }
+    }
+
+    /**
+     * Multiplies this matrix with another matrix. Products are accumulated in float.
+     *
+     * @param other the matrix to multiply with
+     * @return the resulting matrix
+     * @throws IllegalArgumentException if dimensions do not match for multiplication
+     */
+    public FloatMatrix multiply(FloatMatrix other) {
+        if (this.cols != other.rows) {
+            throw new IllegalArgumentException("Matrix dimensions do not match for multiplication.");
+        }
+
+        long start = PhysicsMetrics.start();
+        int resultCols = other.cols;
+        FloatMatrix result = new FloatMatrix(rows, resultCols);
+        float[] a = this.values;
+        float[] b = other.values;
+        float[] c = result.values;
+
+        // i-k-j order keeps the innermost loop on contiguous rows of b and c.
+        for (int i = 0; i < rows; i++) {
+            int cOffset = i * resultCols;
+            for (int k = 0; k < cols; k++) {
+                float aik = a[i * cols + k];
+                int bOffset = k * resultCols;
+                for (int j = 0; j < resultCols; j++) {
+                    c[cOffset + j] += aik * b[bOffset + j];
+                }
+            }
+        }
+
+        PhysicsMetrics.stop(PhysicsPhase.MATRIX, start);
+        return result;
+    }
+
+    /**
+     * Adds this matrix to another matrix.
+     *
+     * @param other the matrix to add
+     * @return the resulting matrix
+     * @throws IllegalArgumentException if dimensions do not match for addition
+     */
+    public FloatMatrix add(FloatMatrix other) {
+        if (this.rows != other.rows || this.cols != other.cols) {
+            throw new IllegalArgumentException("Matrix dimensions do not match for addition.");
+        }
+
+        FloatMatrix result = new FloatMatrix(rows, cols);
+        for (int i = 0; i < values.length; i++) {
+            result.values[i] = values[i] + other.values[i];
+        }
+        return result;
+    }
+
+    /**
+     * Transposes the matrix (flips rows and columns).
+     *
+     * @return the transposed matrix
+     */
+    public FloatMatrix transpose() {
+        FloatMatrix result = new FloatMatrix(cols, rows);
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                result.values[j * rows + i] = values[i * cols + j];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Calculates the determinant of the matrix. The products are taken in double, so nearly singular
+     * matrices do not lose their determinant to cancellation.
+     *
+     * @return the determinant value
+     * @throws IllegalArgumentException if the matrix is not square
+     * @throws UnsupportedOperationException if determinant calculation is not implemented for the matrix size
+     */
+    public double determinant() {
+        if (rows != cols) {
+            throw new IllegalArgumentException("Matrix must be square to compute determinant.");
+        }
+
+        if (rows == 2) {
+            return (double) values[0] * values[3] - (double) values[1] * values[2];
+        }
+
+        throw new UnsupportedOperationException("Determinant calculation is only implemented for 2x2 matrices.");
+    }
+
+    /**
+     * Calculates the inverse of the matrix. Entries are divided by the double-precision determinant
+     * and then rounded to float.
+     *
+     * @return the inverse matrix
+     * @throws IllegalArgumentException if the matrix is not square
+     * @throws ArithmeticException if the matrix is singular
+     * @throws UnsupportedOperationException if inverse calculation is not implemented for the matrix size
+     */
+    public FloatMatrix inverse() {
+        if (rows != cols) {
+            throw new IllegalArgumentException("Matrix must be square to compute inverse.");
+        }
+
+        if (rows == 2) {
+            long start = PhysicsMetrics.start();
+            double det = determinant();
+            if (det == 0) {
+                throw new ArithmeticException("Matrix is singular and cannot be inverted.");
+            }
+            FloatMatrix result = new FloatMatrix(2, 2);
+            result.values[0] = (float) (values[3] / det);
+            result.values[1] = (float) (-values[1] / det);
+            result.values[2] = (float) (-values[2] / det);
+            result.values[3] = (float) (values[0] / det);
+            PhysicsMetrics.stop(PhysicsPhase.MATRIX, start);
+            return result;
+        }
+
+        throw new UnsupportedOperationException("Inverse calculation is only implemented for 2x2 matrices.");
+    }
+
+    /**
+     * Multiplies the matrix by a scalar.
+     *
+     * @param scalar the scalar value
+     * @return the resulting matrix
+     */
+    public FloatMatrix scalarMultiply(float scalar) {
+        FloatMatrix result = new FloatMatrix(rows, cols);
+        for (int i = 0; i < values.length; i++) {
+            result.values[i] = values[i] * scalar;
+        }
+        return result;
+    }
+
+    /**
+     * Calculates the norm (Euclidean length) of the matrix. The sum is accumulated in double.
+     *
+     * @return the norm value
+     */
+    public double norm() {
+        double sum = 0;
+        for (float value : values) {
+            sum += (double) value * value;
+        }
+        return Math.sqrt(sum);
+    }
+
+    /**
+     * Swaps two rows in the matrix.
+     *
+     * @param row1 the first row index
+     * @param row2 the second row index
+     * @throws IndexOutOfBoundsException if row indices are out of bounds
+     */
+    public void swapRows(long row1, long row2) {
+        if (row1 < 0 || row1 >= rows || row2 < 0 || row2 >= rows) {
+            throw new IndexOutOfBoundsException("Invalid row index: " + row1 + " or " + row2);
+        }
+        int offset1 = (int) row1 * cols;
+        int offset2 = (int) row2 * cols;
+        for (int j = 0; j < cols; j++) {
+            float temp = values[offset1 + j];
+            values[offset1 + j] = values[offset2 + j];
+            values[offset2 + j] = temp;
+        }
+    }
+
+    /**
+     * Scales a specific row by a given factor.
+     *
+     * @param row   the row index
+     * @param factor the scaling factor
+     * @throws IndexOutOfBoundsException if the row index is out of bounds
+     */
+    public void scaleRow(long row, float factor) {
+        if (row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException("Invalid row index: " + row);
+        }
+        int offset = (int) row * cols;
+        for (int j = 0; j < cols; j++) {
+            values[offset + j] *= factor;
+        }
+    }
+
+    /**
+     * Adds a scaled version of one row to another row.
+     *
+     * @param row1 the row to be updated
+     * @param row2 the row to be added
+     * @param factor the scaling factor for row2
+     * @throws IndexOutOfBoundsException if row indices are out of bounds
+     */
+    public void addRows(long row1, long row2, float factor) {
+        if (row1 < 0 || row1 >= rows || row2 < 0 || row2 >= rows) {
+            throw new IndexOutOfBoundsException("Invalid row index: " + row1 + " or " + row2);
+        }
+        int offset1 = (int) row1 * cols;
+        int offset2 = (int) row2 * cols;
+        for (int j = 0; j < cols; j++) {
+            values[offset1 + j] += factor * values[offset2 + j];
+        }
+    }
+
+    /**
+     * Raises the matrix to the power of a given integer.
+     *
+     * @param n the exponent
+     * @return the resulting matrix
+     * @throws IllegalArgumentException if the matrix is not square or the exponent is negative
+     */
+    public FloatMatrix power(int n) {
+        if (rows != cols) {
+            throw new IllegalArgumentException("Matrix must be square to compute power.");
+        }
+
+        if (n < 0) {
+            throw new IllegalArgumentException("Exponent must be non-negative.");
+        }
+
+        FloatMatrix result = FloatMatrix.identity(rows);
+        for (int i = 0; i < n; i++) {
+            result = result.multiply(this);
+        }
+
+        return result;
+    }
+
+    /**
+     * Rotates the matrix by a given angle (for 2x2 matrices). The sine and cosine are computed in
+     * double and rounded to float.
+     *
+     * @param angleDegrees the rotation angle in degrees
+     * @return the rotated matrix
+     * @throws UnsupportedOperationException if the matrix is not 2x2
+     */
+    public FloatMatrix rotate(double angleDegrees) {
+        if (rows != 2 || cols != 2) {
+            throw new UnsupportedOperationException("Rotation is only implemented for 2x2 matrices.");
+        }
+
+        double angleRadians = Math.toRadians(angleDegrees);
+        float cosAngle = (float) Math.cos(angleRadians);
+        float sinAngle = (float) Math.sin(angleRadians);
+
+        FloatMatrix rotationMatrix = new FloatMatrix(new float[][] {{cosAngle, -sinAngle}, {sinAngle, cosAngle}});
+        return this.multiply(rotationMatrix);
+    }
+
+    /**
+     * Scales the matrix by given x and y scaling factors (for 2x2 matrices).
+     *
+     * @param scaleX the scaling factor for the x direction
+     * @param scaleY the scaling factor for the y direction
+     * @return the scaled matrix
+     * @throws UnsupportedOperationException if the matrix is not 2x2
+     */
+    public FloatMatrix scale(float scaleX, float scaleY) {
+        if (rows != 2 || cols != 2) {
+            throw new UnsupportedOperationException("Scaling is only implemented for 2x2 matrices.");
+        }
+
+        FloatMatrix scalingMatrix = new FloatMatrix(new float[][] {{scaleX, 0}, {0, scaleY}});
+        return this.multiply(scalingMatrix);
+    }
+
+    /**
+     * Creates an identity matrix of specified size.
+     *
+     * @param size the size of the identity matrix
+     * @return the identity matrix
+     */
+    public static FloatMatrix identity(int size) {
+        FloatMatrix result = new FloatMatrix(size, size);
+        for (int i = 0; i < size; i++) {
+            result.values[i * size + i] = 1;
+        }
+        return result;
+    }
+
+    /**
+     * Creates a zero matrix with specified number of rows and columns.
+     *
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @return the zero matrix
+     */
+    public static FloatMatrix zero(long rows, long cols) {
+        return new FloatMatrix(rows, cols);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                sb.append(String.format("%.2f ", values[i * cols + j]));
+            }
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        FloatMatrix matrix = (FloatMatrix) o;
+        if (rows != matrix.rows || cols != matrix.cols) return false;
+        for (int i = 0; i < values.length; i++) {
+            if (Float.compare(matrix.values[i], values[i]) != 0) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 1;
+        for (float value : values) {
+            result = 31 * result + Float.hashCode(value);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,33 @@
+package com.advn.physics;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Carries halo and migration messages between neighbouring regions of a {@link RegionWorker}
+ * decomposition. A message is a block of doubles. Messages between two regions arrive in the
+ * order they were sent.
+ *
+ * <p>Implementations may block in {@link #send} until the peer has taken an earlier message, so
+ * the exchange protocol of {@link RegionWorker} never has both sides of a link sending at once.
+ */
+public interface HaloTransport extends Closeable {
+    /**
+     * Sends a message to a neighbouring region.
+     *
+     * @param region the destination region index
+     * @param data   the message values
+     * @param length the number of values to send from the start of {@code data}
+     * @throws IOException if the message cannot be delivered
+     */
+    void send(int region, double[] data, int length) throws IOException;
+
+    /**
+     * Waits for the next message from a neighbouring region.
+     *
+     * @param region the source region index
+     * @return the message values
+     * @throws IOException if the link fails or is closed
+     */
+    double[] receive(int region) throws IOException;
+}
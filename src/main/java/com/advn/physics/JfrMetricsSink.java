@@ -0,0 +1,74 @@
+package com.advn.physics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A {@link PhysicsMetricsSink} that emits custom JDK Flight Recorder events.
+ * Events are only committed while a recording has them enabled. The measured time is carried in
+ * {@code phaseNanos} and {@code stepNanos}; JFR reserves the name {@code duration} for its own field.
+ */
+public class JfrMetricsSink implements PhysicsMetricsSink {
+
+    @Override
+    public void onPhase(PhysicsPhase phase, long nanos) {
+        PhaseEvent event = new PhaseEvent();
+        if (event.shouldCommit()) {
+            event.phase = phase.name();
+            event.phaseNanos = nanos;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void onStep(long nanos, long bodies, long pairs, long solverIterations, long allocatedBytes) {
+        StepEvent event = new StepEvent();
+        if (event.shouldCommit()) {
+            event.stepNanos = nanos;
+            event.bodies = bodies;
+            event.pairs = pairs;
+            event.solverIterations = solverIterations;
+            event.allocatedBytes = allocatedBytes;
+            event.commit();
+        }
+    }
+
+    @Name("com.advn.physics.Phase")
+    @Label("Physics Phase")
+    @Category("Physics")
+    @Description("Time spent in one phase of a simulation step")
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+
+        @Label("Phase Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long phaseNanos;
+    }
+
+    @Name("com.advn.physics.Step")
+    @Label("Physics Step")
+    @Category("Physics")
+    @Description("Summary of one simulation step")
+    static class StepEvent extends Event {
+        @Label("Step Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long stepNanos;
+
+        @Label("Bodies")
+        long bodies;
+
+        @Label("Pairs")
+        long pairs;
+
+        @Label("Solver Iterations")
+        long solverIterations;
+
+        @Label("Allocated Bytes")
+        long allocatedBytes;
+    }
+}
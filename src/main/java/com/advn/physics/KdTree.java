@@ -0,0 +1,538 @@
+package com.advn.physics;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A 2D KD-tree over points given as flat coordinate arrays.
+ *
+ * <p>The tree is stored implicitly: points are copied into permuted arrays so that every subrange
+ * {@code [lo, hi)} holds one subtree with its splitting point at the middle index. Queries therefore
+ * walk contiguous memory and allocate nothing beyond a small search context. Results are reported as
+ * indices into the original arrays, together with Euclidean distances.
+ *
+ * <p>The tree is a snapshot: after the source coordinates change, call {@link #rebuild()}. Builds of
+ * large point sets and batched queries can run on the common fork/join pool.
+ */
+public class KdTree {
+    private static final int LEAF_SIZE = 8;
+    private static final int PARALLEL_BUILD_THRESHOLD = 1 << 15;
+    private static final int PARALLEL_QUERY_CHUNK = 1 << 10;
+
+    private double[] sourceX;
+    private double[] sourceY;
+    private int size;
+    private boolean parallel;
+    private double[] px;
+    private double[] py;
+    private int[] ids;
+    // Split axis of the node whose splitting point sits at this index: 0 for x, 1 for y.
+    private byte[] axis;
+
+    /**
+     * Builds a tree over the first {@code size} points.
+     *
+     * @param xs       the x coordinates
+     * @param ys       the y coordinates
+     * @param size     the number of points to index
+     * @param parallel true to build large trees on the common fork/join pool
+     * @throws IllegalArgumentException if the arrays are shorter than {@code size}
+     */
+    public KdTree(double[] xs, double[] ys, int size, boolean parallel) {
+        rebuild(xs, ys, size, parallel);
+    }
+
+    /**
+     * Builds a tree over all points, sequentially.
+     *
+     * @param xs the x coordinates
+     * @param ys the y coordinates
+     * @throws IllegalArgumentException if the arrays differ in length
+     */
+    public KdTree(double[] xs, double[] ys) {
+        this(xs, ys, checkSameLength(xs, ys), false);
+    }
+
+    /**
+     * Builds a tree over an array of vectors.
+     *
+     * @param points the points
+     * @return the tree
+     */
+    public static KdTree of(PhysicsVector[] points) {
+        double[] xs = new double[points.length];
+        double[] ys = new double[points.length];
+        for (int i = 0; i < points.length; i++) {
+            xs[i] = points[i].getX();
+            ys[i] = points[i].getY();
+        }
+        return new KdTree(xs, ys, points.length, false);
+    }
+
+    /**
+     * Rebuilds the tree from the current contents of the source arrays, in parallel if the last build was.
+     */
+    public void rebuild() {
+        rebuild(sourceX, sourceY, size, parallel);
+    }
+
+    /**
+     * Rebuilds the tree over new points, reusing internal storage where it is large enough.
+     *
+     * @param xs       the x coordinates
+     * @param ys       the y coordinates
+     * @param size     the number of points to index
+     * @param parallel true to build large trees on the common fork/join pool
+     * @throws IllegalArgumentException if the arrays are shorter than {@code size}
+     */
+    public void rebuild(double[] xs, double[] ys, int size, boolean parallel) {
+        if (size < 0 || xs.length < size || ys.length < size) {
+            throw new IllegalArgumentException("Coordinate arrays are shorter than the point count.");
+        }
+        long start = PhysicsMetrics.start();
+        this.sourceX = xs;
+        this.sourceY = ys;
+        this.size = size;
+        this.parallel = parallel;
+        if (px == null || px.length < size) {
+            px = new double[size];
+            py = new double[size];
+            ids = new int[size];
+            axis = new byte[size];
+        }
+        System.arraycopy(xs, 0, px, 0, size);
+        System.arraycopy(ys, 0, py, 0, size);
+        for (int i = 0; i < size; i++) {
+            ids[i] = i;
+        }
+        if (parallel && size > PARALLEL_BUILD_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(new BuildTask(0, size));
+        } else {
+            build(0, size);
+        }
+        PhysicsMetrics.stop(PhysicsPhase.BROADPHASE, start);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the point closest to a query position.
+     *
+     * @param x the query x coordinate
+     * @param y the query y coordinate
+     * @return the index of the nearest point, or -1 if the tree is empty
+     */
+    public int nearest(double x, double y) {
+        int[] index = new int[1];
+        double[] distance = new double[1];
+        return kNearest(x, y, 1, index, distance, 0) == 0 ? -1 : index[0];
+    }
+
+    /**
+     * Finds the {@code k} points closest to a query position, nearest first.
+     *
+     * @see #kNearest(double, double, int, int[], double[], int)
+     */
+    public int kNearest(double x, double y, int k, int[] outIndices, double[] outDistances) {
+        return kNearest(x, y, k, outIndices, outDistances, 0);
+    }
+
+    /**
+     * Finds the {@code k} points closest to a query position, nearest first.
+     *
+     * @param x            the query x coordinate
+     * @param y            the query y coordinate
+     * @param k            the number of neighbours wanted
+     * @param outIndices   receives point indices from {@code offset}
+     * @param outDistances receives the matching distances from {@code offset}
+     * @param offset       the first output slot
+     * @return the number of neighbours written, {@code min(k, size())}
+     * @throws IllegalArgumentException if {@code k} is negative or the output arrays are too short
+     */
+    public int kNearest(double x, double y, int k, int[] outIndices, double[] outDistances, int offset) {
+        if (k < 0 || outIndices.length < offset + k || outDistances.length < offset + k) {
+            throw new IllegalArgumentException("Output arrays are too short for k = " + k + ".");
+        }
+        return new Search().kNearest(x, y, k, outIndices, outDistances, offset);
+    }
+
+    /**
+     * Finds all points within a radius of a query position, in no particular order.
+     * At most {@code outIndices.length} results are written, but all matches are counted.
+     *
+     * @param x            the query x coordinate
+     * @param y            the query y coordinate
+     * @param radius       the search radius
+     * @param outIndices   receives point indices
+     * @param outDistances receives the matching distances; at least as long as {@code outIndices}
+     * @return the total number of points within the radius, which may exceed the output capacity
+     */
+    public int withinRadius(double x, double y, double radius, int[] outIndices, double[] outDistances) {
+        if (outDistances.length < outIndices.length) {
+            throw new IllegalArgumentException("Distance array is shorter than the index array.");
+        }
+        Search search = new Search();
+        search.qx = x;
+        search.qy = y;
+        search.indices = outIndices;
+        search.distances = outDistances;
+        search.radiusSq = radius * radius;
+        search.count = 0;
+        search.radius(0, size);
+        for (int i = 0, n = Math.min(search.count, outIndices.length); i < n; i++) {
+            outDistances[i] = Math.sqrt(outDistances[i]);
+        }
+        return search.count;
+    }
+
+    /**
+     * Runs a k-nearest-neighbour query for every query point. Query {@code q} writes its results to
+     * slots {@code [q * k, q * k + k)}; slots beyond the tree size are filled with -1 and infinity.
+     *
+     * @param qx           the query x coordinates
+     * @param qy           the query y coordinates
+     * @param count        the number of queries
+     * @param k            the number of neighbours per query
+     * @param outIndices   receives {@code count * k} point indices
+     * @param outDistances receives {@code count * k} distances
+     * @param parallel     true to spread the queries over the common fork/join pool
+     * @throws IllegalArgumentException if any array is too short
+     */
+    public void kNearestBatch(double[] qx, double[] qy, int count, int k, int[] outIndices, double[] outDistances,
+                              boolean parallel) {
+        if (k < 0 || qx.length < count || qy.length < count
+                || outIndices.length < (long) count * k || outDistances.length < (long) count * k) {
+            throw new IllegalArgumentException("Batch arrays are too short.");
+        }
+        long start = PhysicsMetrics.start();
+        if (parallel && count > PARALLEL_QUERY_CHUNK) {
+            ForkJoinPool.commonPool().invoke(new QueryTask(qx, qy, 0, count, k, outIndices, outDistances));
+        } else {
+            runQueries(qx, qy, 0, count, k, outIndices, outDistances);
+        }
+        PhysicsMetrics.stop(PhysicsPhase.BROADPHASE, start);
+    }
+
+    /**
+     * Finds the nearest point for every query point.
+     *
+     * @param qx           the query x coordinates
+     * @param qy           the query y coordinates
+     * @param count        the number of queries
+     * @param outIndices   receives the nearest point index per query, or -1 if the tree is empty
+     * @param outDistances receives the distance per query
+     * @param parallel     true to spread the queries over the common fork/join pool
+     */
+    public void nearestBatch(double[] qx, double[] qy, int count, int[] outIndices, double[] outDistances,
+                             boolean parallel) {
+        kNearestBatch(qx, qy, count, 1, outIndices, outDistances, parallel);
+    }
+
+    private void runQueries(double[] qx, double[] qy, int from, int to, int k, int[] outIndices, double[] outDistances) {
+        Search search = new Search();
+        for (int q = from; q < to; q++) {
+            int offset = q * k;
+            int found = search.kNearest(qx[q], qy[q], k, outIndices, outDistances, offset);
+            for (int i = found; i < k; i++) {
+                outIndices[offset + i] = -1;
+                outDistances[offset + i] = Double.POSITIVE_INFINITY;
+            }
+        }
+    }
+
+    private void build(int lo, int hi) {
+        while (hi - lo > LEAF_SIZE) {
+            int mid = split(lo, hi);
+            if (mid - lo < hi - mid - 1) {
+                build(lo, mid);
+                lo = mid + 1;
+            } else {
+                build(mid + 1, hi);
+                hi = mid;
+            }
+        }
+    }
+
+    /**
+     * Chooses the axis with the larger spread, places the median of {@code [lo, hi)} at the middle index and records the axis.
+     *
+     * @return the middle index
+     */
+    private int split(int lo, int hi) {
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = lo; i < hi; i++) {
+            minX = Math.min(minX, px[i]);
+            maxX = Math.max(maxX, px[i]);
+            minY = Math.min(minY, py[i]);
+            maxY = Math.max(maxY, py[i]);
+        }
+        byte dim = (byte) (maxX - minX >= maxY - minY ? 0 : 1);
+        int mid = (lo + hi) >>> 1;
+        select(dim == 0 ? px : py, lo, hi - 1, mid);
+        axis[mid] = dim;
+        return mid;
+    }
+
+    /**
+     * Quickselect on {@code keys[lo..hi]} so that index {@code k} holds its final sorted value, swapping all point arrays together.
+     * The three-way partition gathers keys equal to the pivot in the middle, so duplicate coordinates end the search instead of
+     * peeling off one element per pass.
+     */
+    private void select(double[] keys, int lo, int hi, int k) {
+        while (hi > lo) {
+            double a = keys[lo];
+            double b = keys[(lo + hi) >>> 1];
+            double c = keys[hi];
+            double pivot = Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+            int lt = lo;
+            int gt = hi;
+            int i = lo;
+            while (i <= gt) {
+                if (keys[i] < pivot) {
+                    swap(lt++, i++);
+                } else if (keys[i] > pivot) {
+                    swap(i, gt--);
+                } else {
+                    i++;
+                }
+            }
+            // Now keys[lo..lt) < pivot, keys[lt..gt] == pivot and keys(gt..hi] > pivot.
+            if (k < lt) {
+                hi = lt - 1;
+            } else if (k > gt) {
+                lo = gt + 1;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap(int a, int b) {
+        double tx = px[a];
+        px[a] = px[b];
+        px[b] = tx;
+        double ty = py[a];
+        py[a] = py[b];
+        py[b] = ty;
+        int ti = ids[a];
+        ids[a] = ids[b];
+        ids[b] = ti;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("KdTree(points: %d)", size);
+    }
+
+    private static int checkSameLength(double[] xs, double[] ys) {
+        if (xs.length != ys.length) {
+            throw new IllegalArgumentException("Coordinate arrays must have the same length.");
+        }
+        return xs.length;
+    }
+
+    /**
+     * Per-query state. Results are kept as a max-heap of squared distances in the caller's arrays.
+     */
+    private final class Search {
+        double qx;
+        double qy;
+        int[] indices;
+        double[] distances;
+        int offset;
+        int k;
+        int count;
+        double radiusSq;
+
+        int kNearest(double x, double y, int k, int[] outIndices, double[] outDistances, int offset) {
+            if (k == 0 || size == 0) {
+                return 0;
+            }
+            this.qx = x;
+            this.qy = y;
+            this.indices = outIndices;
+            this.distances = outDistances;
+            this.offset = offset;
+            this.k = k;
+            this.count = 0;
+            nearest(0, size);
+
+            // Heap-sort ascending in place, then convert to distances.
+            for (int end = count - 1; end > 0; end--) {
+                swapResult(0, end);
+                siftDown(0, end);
+            }
+            for (int i = 0; i < count; i++) {
+                outDistances[offset + i] = Math.sqrt(outDistances[offset + i]);
+            }
+            return count;
+        }
+
+        private double worst() {
+            return count < k ? Double.POSITIVE_INFINITY : distances[offset];
+        }
+
+        private void offer(int i) {
+            double dx = px[i] - qx;
+            double dy = py[i] - qy;
+            double d = dx * dx + dy * dy;
+            if (count < k) {
+                // Sift up.
+                int c = count++;
+                while (c > 0) {
+                    int parent = (c - 1) >>> 1;
+                    if (distances[offset + parent] >= d) {
+                        break;
+                    }
+                    indices[offset + c] = indices[offset + parent];
+                    distances[offset + c] = distances[offset + parent];
+                    c = parent;
+                }
+                indices[offset + c] = ids[i];
+                distances[offset + c] = d;
+            } else if (d < distances[offset]) {
+                indices[offset] = ids[i];
+                distances[offset] = d;
+                siftDown(0, count);
+            }
+        }
+
+        private void siftDown(int c, int n) {
+            while (true) {
+                int child = 2 * c + 1;
+                if (child >= n) {
+                    return;
+                }
+                if (child + 1 < n && distances[offset + child + 1] > distances[offset + child]) {
+                    child++;
+                }
+                if (distances[offset + c] >= distances[offset + child]) {
+                    return;
+                }
+                swapResult(c, child);
+                c = child;
+            }
+        }
+
+        private void swapResult(int a, int b) {
+            int ti = indices[offset + a];
+            indices[offset + a] = indices[offset + b];
+            indices[offset + b] = ti;
+            double td = distances[offset + a];
+            distances[offset + a] = distances[offset + b];
+            distances[offset + b] = td;
+        }
+
+        private void nearest(int lo, int hi) {
+            if (hi - lo <= LEAF_SIZE) {
+                for (int i = lo; i < hi; i++) {
+                    offer(i);
+                }
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            offer(mid);
+            double diff = axis[mid] == 0 ? qx - px[mid] : qy - py[mid];
+            if (diff < 0) {
+                nearest(lo, mid);
+                if (diff * diff < worst()) {
+                    nearest(mid + 1, hi);
+                }
+            } else {
+                nearest(mid + 1, hi);
+                if (diff * diff < worst()) {
+                    nearest(lo, mid);
+                }
+            }
+        }
+
+        private void radius(int lo, int hi) {
+            if (hi - lo <= LEAF_SIZE) {
+                for (int i = lo; i < hi; i++) {
+                    collect(i);
+                }
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            collect(mid);
+            double diff = axis[mid] == 0 ? qx - px[mid] : qy - py[mid];
+            if (diff < 0 || diff * diff <= radiusSq) {
+                radius(lo, mid);
+            }
+            if (diff >= 0 || diff * diff <= radiusSq) {
+                radius(mid + 1, hi);
+            }
+        }
+
+        private void collect(int i) {
+            double dx = px[i] - qx;
+            double dy = py[i] - qy;
+            double d = dx * dx + dy * dy;
+            if (d <= radiusSq) {
+                if (count < indices.length) {
+                    indices[count] = ids[i];
+                    distances[count] = d;
+                }
+                count++;
+            }
+        }
+    }
+
+    @SuppressWarnings("serial") // Never serialized; only forked on the common pool.
+    private final class BuildTask extends RecursiveAction {
+        private final int lo;
+        private final int hi;
+
+        BuildTask(int lo, int hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= PARALLEL_BUILD_THRESHOLD) {
+                build(lo, hi);
+                return;
+            }
+            int mid = split(lo, hi);
+            invokeAll(new BuildTask(lo, mid), new BuildTask(mid + 1, hi));
+        }
+    }
+
+    @SuppressWarnings("serial") // Never serialized; only forked on the common pool.
+    private final class QueryTask extends RecursiveAction {
+        private final double[] qx;
+        private final double[] qy;
+        private final int from;
+        private final int to;
+        private final int k;
+        private final int[] outIndices;
+        private final double[] outDistances;
+
+        QueryTask(double[] qx, double[] qy, int from, int to, int k, int[] outIndices, double[] outDistances) {
+            this.qx = qx;
+            this.qy = qy;
+            this.from = from;
+            this.to = to;
+            this.k = k;
+            this.outIndices = outIndices;
+            this.outDistances = outDistances;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_QUERY_CHUNK) {
+                runQueries(qx, qy, from, to, k, outIndices, outDistances);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new QueryTask(qx, qy, from, mid, k, outIndices, outDistances),
+                    new QueryTask(qx, qy, mid, to, k, outIndices, outDistances));
+        }
+    }
+}
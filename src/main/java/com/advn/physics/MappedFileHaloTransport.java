@@ -0,0 +1,212 @@
+package com.advn.physics;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link HaloTransport} over shared memory-mapped files, for regions running as processes on one machine.
+ *
+ * <p>Every directed link between neighbours is a single-slot mailbox file named
+ * {@code halo-<from>-<to>.bin} in a shared directory. The file holds a header and one message.
+ * The header has a sequence number written by the sender, an acknowledgement written by the
+ * receiver, and the message length. The sender waits until the previous message has been
+ * acknowledged, writes the payload and then publishes the new sequence number with release
+ * semantics. The receiver polls for the sequence number with acquire semantics, first spinning
+ * and then parking briefly.
+ *
+ * <p>The sender creates each mailbox file and the receiver waits for it to appear, so every run
+ * starts from a zeroed header. A file left over from an earlier run that was killed before
+ * {@link #close()} would replay stale messages; the sender refuses to open it and fails instead.
+ * Each transport deletes the files it sends through when closed.
+ */
+public class MappedFileHaloTransport implements HaloTransport {
+    private static final int DEFAULT_CAPACITY = 16 << 20;
+    private static final long DEFAULT_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(60);
+    private static final int SEQUENCE = 0;
+    private static final int ACKNOWLEDGED = 8;
+    private static final int LENGTH = 16;
+    private static final int DATA = 64;
+    private static final int SPINS = 1 << 12;
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final int region;
+    private final int capacity;
+    private final Mailbox[] outgoing = new Mailbox[2];
+    private final Mailbox[] incoming = new Mailbox[2];
+
+    /**
+     * Opens the mailboxes of one region with a 16 MiB capacity per link.
+     *
+     * @see #MappedFileHaloTransport(Path, int, int, int)
+     */
+    public MappedFileHaloTransport(Path directory, int region, int regions) throws IOException {
+        this(directory, region, regions, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Opens the mailboxes between one region and its neighbours. The outgoing files are created
+     * first; the incoming ones are waited for until the neighbours have created them.
+     *
+     * @param directory the shared directory
+     * @param region    this region's index
+     * @param regions   the number of regions
+     * @param capacity  the maximum message size per link in bytes
+     * @throws IOException if a file cannot be created or mapped, an outgoing file already exists, or a
+     *         neighbour does not create its file in time
+     * @throws IllegalArgumentException if the region index or capacity is invalid
+     */
+    public MappedFileHaloTransport(Path directory, int region, int regions, int capacity) throws IOException {
+        if (region < 0 || region >= regions) {
+            throw new IllegalArgumentException("Invalid region: " + region);
+        }
+        if (capacity < Double.BYTES || capacity > Integer.MAX_VALUE - DATA) {
+            throw new IllegalArgumentException("Invalid mailbox capacity: " + capacity);
+        }
+        this.region = region;
+        this.capacity = capacity;
+        Files.createDirectories(directory);
+        int[] neighbours = {region - 1, region + 1};
+        for (int side = 0; side < 2; side++) {
+            int peer = neighbours[side];
+            if (peer >= 0 && peer < regions) {
+                Path path = directory.resolve("halo-" + region + "-" + peer + ".bin");
+                try {
+                    outgoing[side] = new Mailbox(path, capacity, FileChannel.open(path,
+                            StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE));
+                } catch (FileAlreadyExistsException e) {
+                    throw new IOException("Mailbox " + path + " is left over from an earlier run; use an empty directory.", e);
+                }
+            }
+        }
+        for (int side = 0; side < 2; side++) {
+            int peer = neighbours[side];
+            if (peer >= 0 && peer < regions) {
+                Path path = directory.resolve("halo-" + peer + "-" + region + ".bin");
+                incoming[side] = new Mailbox(path, capacity, openCreated(path, peer));
+            }
+        }
+    }
+
+    @Override
+    public void send(int region, double[] data, int length) throws IOException {
+        Mailbox box = mailbox(outgoing, region);
+        if ((long) length * Double.BYTES > capacity) {
+            throw new IOException("Halo message of " + length + " values exceeds the mailbox capacity of " + capacity + " bytes.");
+        }
+        long sequence = box.sequence;
+        await(box, ACKNOWLEDGED, sequence, region);
+        box.buffer.putInt(LENGTH, length);
+        box.data.clear();
+        box.data.put(data, 0, length);
+        LONG.setRelease(box.buffer, SEQUENCE, sequence + 1);
+        box.sequence = sequence + 1;
+    }
+
+    @Override
+    public double[] receive(int region) throws IOException {
+        Mailbox box = mailbox(incoming, region);
+        long sequence = box.sequence + 1;
+        await(box, SEQUENCE, sequence, region);
+        int length = box.buffer.getInt(LENGTH);
+        if (length < 0 || (long) length * Double.BYTES > capacity) {
+            throw new IOException("Corrupt halo message from region " + region + ".");
+        }
+        double[] data = new double[length];
+        box.data.clear();
+        box.data.get(data);
+        LONG.setRelease(box.buffer, ACKNOWLEDGED, sequence);
+        box.sequence = sequence;
+        return data;
+    }
+
+    /**
+     * Deletes this region's outgoing mailbox files. The mappings themselves are released when collected.
+     */
+    @Override
+    public void close() throws IOException {
+        for (Mailbox box : outgoing) {
+            if (box != null) {
+                Files.deleteIfExists(box.path);
+            }
+        }
+    }
+
+    /**
+     * Opens a mailbox file once its sender has created it.
+     */
+    private static FileChannel openCreated(Path path, int peer) throws IOException {
+        long deadline = System.nanoTime() + DEFAULT_TIMEOUT_NANOS;
+        while (true) {
+            try {
+                return FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            } catch (NoSuchFileException e) {
+                if (System.nanoTime() > deadline) {
+                    throw new IOException("Timed out waiting for region " + peer + " to create " + path + ".", e);
+                }
+                if (Thread.interrupted()) {
+                    throw new IOException("Interrupted while waiting for region " + peer + ".", e);
+                }
+                LockSupport.parkNanos(1_000_000);
+            }
+        }
+    }
+
+    private void await(Mailbox box, int offset, long value, int peer) throws IOException {
+        long deadline = 0;
+        for (int spins = 0; (long) LONG.getAcquire(box.buffer, offset) < value; spins++) {
+            if (spins < SPINS) {
+                Thread.onSpinWait();
+                continue;
+            }
+            if (deadline == 0) {
+                deadline = System.nanoTime() + DEFAULT_TIMEOUT_NANOS;
+            } else if (System.nanoTime() > deadline) {
+                throw new IOException("Timed out waiting for region " + peer + ".");
+            }
+            if (Thread.interrupted()) {
+                throw new IOException("Interrupted while waiting for region " + peer + ".");
+            }
+            LockSupport.parkNanos(50_000);
+        }
+    }
+
+    private Mailbox mailbox(Mailbox[] boxes, int peer) {
+        Mailbox box = null;
+        if (peer == region - 1) {
+            box = boxes[0];
+        } else if (peer == region + 1) {
+            box = boxes[1];
+        }
+        if (box == null) {
+            throw new IllegalArgumentException("Region " + peer + " is not a neighbour of region " + region + ".");
+        }
+        return box;
+    }
+
+    private static final class Mailbox {
+        final Path path;
+        final MappedByteBuffer buffer;
+        final DoubleBuffer data;
+        long sequence;
+
+        Mailbox(Path path, int capacity, FileChannel file) throws IOException {
+            this.path = path;
+            try (FileChannel channel = file) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, DATA + (long) capacity);
+            }
+            data = buffer.duplicate().position(DATA).slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        }
+    }
+}
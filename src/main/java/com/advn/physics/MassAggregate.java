@@ -0,0 +1,385 @@
+package com.advn.physics;
+
+import java.util.Arrays;
+
+/**
+ * Incrementally maintained totals over a system of bodies: total mass, center of mass, linear
+ * momentum and kinetic energy, overall and per group.
+ *
+ * <p>Every change made through this tracker ({@link #addMass}, {@link #subtractMass},
+ * {@link #scaleMass}, {@link #setPosition}, {@link #setVelocity}, ...) is applied to the underlying
+ * {@link PhysicsMass} and folded into the running sums as a delta, so all queries are O(1). Running
+ * sums accumulate rounding error, so after {@code resumInterval} updates the sums are rebuilt from
+ * the stored per-body values with compensated (Neumaier) summation.
+ *
+ * <p>Changes made to a registered {@link PhysicsMass} directly are not seen until {@link #refresh(int)}.
+ * Kinetic energy uses the same convention as {@link PhysicsMass#calculateKineticEnergy(double)}.
+ */
+public class MassAggregate {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int resumInterval;
+    private int updatesSinceResum;
+
+    private int count;
+    private PhysicsMass[] masses = new PhysicsMass[INITIAL_CAPACITY];
+    private double[] m = new double[INITIAL_CAPACITY];
+    private double[] x = new double[INITIAL_CAPACITY];
+    private double[] y = new double[INITIAL_CAPACITY];
+    private double[] vx = new double[INITIAL_CAPACITY];
+    private double[] vy = new double[INITIAL_CAPACITY];
+    private int[] group = new int[INITIAL_CAPACITY];
+
+    // Index 0 holds the system totals; index g + 1 holds group g.
+    private double[] sumMass = new double[1];
+    private double[] sumMx = new double[1];
+    private double[] sumMy = new double[1];
+    private double[] sumPx = new double[1];
+    private double[] sumPy = new double[1];
+    private double[] sumEnergy = new double[1];
+
+    /**
+     * Creates a tracker that re-sums after every 1024 updates.
+     */
+    public MassAggregate() {
+        this(1024);
+    }
+
+    /**
+     * Creates a tracker.
+     *
+     * @param resumInterval the number of incremental updates between compensated re-summations
+     * @throws IllegalArgumentException if the interval is not positive
+     */
+    public MassAggregate(int resumInterval) {
+        if (resumInterval < 1) {
+            throw new IllegalArgumentException("Re-summation interval must be positive.");
+        }
+        this.resumInterval = resumInterval;
+    }
+
+    /**
+     * Registers a body in group 0.
+     *
+     * @see #add(PhysicsMass, PhysicsVector, PhysicsVector, int)
+     */
+    public int add(PhysicsMass mass, PhysicsVector position, PhysicsVector velocity) {
+        return add(mass, position, velocity, 0);
+    }
+
+    /**
+     * Registers a body.
+     *
+     * @param mass     the mass of the body; the tracker keeps the reference
+     * @param position the position
+     * @param velocity the velocity
+     * @param group    the group id, a non-negative number
+     * @return the id of the body in this tracker
+     * @throws IllegalArgumentException if the group is negative
+     */
+    public int add(PhysicsMass mass, PhysicsVector position, PhysicsVector velocity, int group) {
+        if (group < 0) {
+            throw new IllegalArgumentException("Group cannot be negative.");
+        }
+        ensureCapacity(count + 1);
+        ensureGroup(group);
+        int id = count++;
+        masses[id] = mass;
+        this.group[id] = group;
+        m[id] = 0;
+        x[id] = 0;
+        y[id] = 0;
+        vx[id] = 0;
+        vy[id] = 0;
+        update(id, mass.getMass(), position.getX(), position.getY(), velocity.getX(), velocity.getY());
+        return id;
+    }
+
+    /**
+     * Adds another mass to a body, as {@link PhysicsMass#addMass(PhysicsMass)}.
+     *
+     * @param id    the body id
+     * @param other the mass to add
+     */
+    public void addMass(int id, PhysicsMass other) {
+        checkBody(id);
+        masses[id].addMass(other);
+        refresh(id);
+    }
+
+    /**
+     * Subtracts another mass from a body, as {@link PhysicsMass#subtractMass(PhysicsMass)}.
+     *
+     * @param id    the body id
+     * @param other the mass to subtract
+     */
+    public void subtractMass(int id, PhysicsMass other) {
+        checkBody(id);
+        masses[id].subtractMass(other);
+        refresh(id);
+    }
+
+    /**
+     * Scales the mass of a body by a percentage, as {@link PhysicsMass#scaleMass(double)}.
+     *
+     * @param id         the body id
+     * @param percentage the percentage to scale by
+     */
+    public void scaleMass(int id, double percentage) {
+        checkBody(id);
+        masses[id].scaleMass(percentage);
+        refresh(id);
+    }
+
+    /**
+     * Multiplies the mass of a body, as {@link PhysicsMass#multiplyMass(double)}.
+     *
+     * @param id     the body id
+     * @param factor the factor to multiply by
+     */
+    public void multiplyMass(int id, double factor) {
+        checkBody(id);
+        masses[id].multiplyMass(factor);
+        refresh(id);
+    }
+
+    /**
+     * Divides the mass of a body, as {@link PhysicsMass#divideMass(double)}.
+     *
+     * @param id     the body id
+     * @param factor the factor to divide by
+     * @throws ArithmeticException if the factor is zero
+     */
+    public void divideMass(int id, double factor) {
+        checkBody(id);
+        masses[id].divideMass(factor);
+        refresh(id);
+    }
+
+    /**
+     * Sets the mass of a body, as {@link PhysicsMass#setMass(double)}.
+     *
+     * @param id   the body id
+     * @param mass the new mass
+     */
+    public void setMass(int id, double mass) {
+        checkBody(id);
+        masses[id].setMass(mass);
+        refresh(id);
+    }
+
+    public void setPosition(int id, double x, double y) {
+        checkBody(id);
+        update(id, m[id], x, y, vx[id], vy[id]);
+    }
+
+    public void setVelocity(int id, double vx, double vy) {
+        checkBody(id);
+        update(id, m[id], x[id], y[id], vx, vy);
+    }
+
+    /**
+     * Sets position and velocity of a body in one update.
+     *
+     * @param id       the body id
+     * @param position the new position
+     * @param velocity the new velocity
+     */
+    public void setState(int id, PhysicsVector position, PhysicsVector velocity) {
+        checkBody(id);
+        update(id, m[id], position.getX(), position.getY(), velocity.getX(), velocity.getY());
+    }
+
+    /**
+     * Re-reads the mass of a body after it was changed outside this tracker.
+     *
+     * @param id the body id
+     */
+    public void refresh(int id) {
+        checkBody(id);
+        update(id, masses[id].getMass(), x[id], y[id], vx[id], vy[id]);
+    }
+
+    public int getBodyCount() {
+        return count;
+    }
+
+    public double getTotalMass() {
+        return sumMass[0];
+    }
+
+    /**
+     * Gets the center of mass of the whole system.
+     *
+     * @return the center of mass
+     * @throws ArithmeticException if the total mass is zero
+     */
+    public PhysicsVector getCenterOfMass() {
+        return centerOfMass(0);
+    }
+
+    public PhysicsVector getMomentum() {
+        return new PhysicsVector(sumPx[0], sumPy[0]);
+    }
+
+    public double getKineticEnergy() {
+        return sumEnergy[0];
+    }
+
+    public double getGroupMass(int group) {
+        return hasGroup(group) ? sumMass[group + 1] : 0;
+    }
+
+    /**
+     * Gets the center of mass of one group.
+     *
+     * @param group the group id
+     * @return the center of mass
+     * @throws ArithmeticException if the group's total mass is zero
+     */
+    public PhysicsVector getGroupCenterOfMass(int group) {
+        if (!hasGroup(group)) {
+            throw new ArithmeticException("Total mass cannot be zero.");
+        }
+        return centerOfMass(group + 1);
+    }
+
+    public PhysicsVector getGroupMomentum(int group) {
+        if (!hasGroup(group)) {
+            return new PhysicsVector(0, 0);
+        }
+        return new PhysicsVector(sumPx[group + 1], sumPy[group + 1]);
+    }
+
+    public double getGroupKineticEnergy(int group) {
+        return hasGroup(group) ? sumEnergy[group + 1] : 0;
+    }
+
+    /**
+     * Rebuilds every running sum from the per-body values with Neumaier compensated summation.
+     * Called automatically every {@code resumInterval} updates.
+     */
+    public void resum() {
+        int slots = sumMass.length;
+        double[][] sums = {sumMass, sumMx, sumMy, sumPx, sumPy, sumEnergy};
+        double[][] compensation = new double[sums.length][slots];
+        for (double[] sum : sums) {
+            Arrays.fill(sum, 0);
+        }
+        for (int i = 0; i < count; i++) {
+            double mass = m[i];
+            int g = group[i] + 1;
+            addBoth(sums[0], compensation[0], g, mass);
+            addBoth(sums[1], compensation[1], g, mass * x[i]);
+            addBoth(sums[2], compensation[2], g, mass * y[i]);
+            addBoth(sums[3], compensation[3], g, mass * vx[i]);
+            addBoth(sums[4], compensation[4], g, mass * vy[i]);
+            addBoth(sums[5], compensation[5], g, 0.5 * mass * (vx[i] * vx[i] + vy[i] * vy[i]));
+        }
+        for (int s = 0; s < sums.length; s++) {
+            for (int g = 0; g < slots; g++) {
+                sums[s][g] += compensation[s][g];
+            }
+        }
+        updatesSinceResum = 0;
+    }
+
+    private static void addBoth(double[] sum, double[] compensation, int groupSlot, double value) {
+        neumaierAdd(sum, compensation, 0, value);
+        neumaierAdd(sum, compensation, groupSlot, value);
+    }
+
+    private static void neumaierAdd(double[] sum, double[] compensation, int index, double value) {
+        double t = sum[index] + value;
+        if (Math.abs(sum[index]) >= Math.abs(value)) {
+            compensation[index] += (sum[index] - t) + value;
+        } else {
+            compensation[index] += (value - t) + sum[index];
+        }
+        sum[index] = t;
+    }
+
+    private void update(int id, double newM, double newX, double newY, double newVx, double newVy) {
+        double oldM = m[id];
+        double dMass = newM - oldM;
+        double dMx = newM * newX - oldM * x[id];
+        double dMy = newM * newY - oldM * y[id];
+        double dPx = newM * newVx - oldM * vx[id];
+        double dPy = newM * newVy - oldM * vy[id];
+        double dEnergy = 0.5 * (newM * (newVx * newVx + newVy * newVy) - oldM * (vx[id] * vx[id] + vy[id] * vy[id]));
+
+        int g = group[id] + 1;
+        sumMass[0] += dMass;
+        sumMass[g] += dMass;
+        sumMx[0] += dMx;
+        sumMx[g] += dMx;
+        sumMy[0] += dMy;
+        sumMy[g] += dMy;
+        sumPx[0] += dPx;
+        sumPx[g] += dPx;
+        sumPy[0] += dPy;
+        sumPy[g] += dPy;
+        sumEnergy[0] += dEnergy;
+        sumEnergy[g] += dEnergy;
+
+        m[id] = newM;
+        x[id] = newX;
+        y[id] = newY;
+        vx[id] = newVx;
+        vy[id] = newVy;
+
+        if (++updatesSinceResum >= resumInterval) {
+            resum();
+        }
+    }
+
+    private PhysicsVector centerOfMass(int slot) {
+        double total = sumMass[slot];
+        if (total == 0) {
+            throw new ArithmeticException("Total mass cannot be zero.");
+        }
+        return new PhysicsVector(sumMx[slot] / total, sumMy[slot] / total);
+    }
+
+    private boolean hasGroup(int group) {
+        return group >= 0 && group + 1 < sumMass.length;
+    }
+
+    private void ensureGroup(int group) {
+        int slots = group + 2;
+        if (slots <= sumMass.length) {
+            return;
+        }
+        sumMass = Arrays.copyOf(sumMass, slots);
+        sumMx = Arrays.copyOf(sumMx, slots);
+        sumMy = Arrays.copyOf(sumMy, slots);
+        sumPx = Arrays.copyOf(sumPx, slots);
+        sumPy = Arrays.copyOf(sumPy, slots);
+        sumEnergy = Arrays.copyOf(sumEnergy, slots);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= m.length) {
+            return;
+        }
+        int n = Math.max(capacity, m.length * 2);
+        masses = Arrays.copyOf(masses, n);
+        m = Arrays.copyOf(m, n);
+        x = Arrays.copyOf(x, n);
+        y = Arrays.copyOf(y, n);
+        vx = Arrays.copyOf(vx, n);
+        vy = Arrays.copyOf(vy, n);
+        group = Arrays.copyOf(group, n);
+    }
+
+    private void checkBody(int id) {
+        if (id < 0 || id >= count) {
+            throw new IndexOutOfBoundsException("Invalid body id: " + id);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MassAggregate(bodies: %d, mass: %.2f, energy: %.2f)", count, getTotalMass(), getKineticEnergy());
+    }
+}
@@ -73,6 +73,23 @@ public class Matrix {
         values[(int) row][(int) col] = value;
     }
 
+    /**
+     * Returns the backing array without copying, for kernels in this package.
+     */
+    double[][] rawValues() {
+        return values;
+    }
+
+    /**
+     * Starts a lazy expression with this matrix as its first operand.
+     *
+     * @return the expression
+     * @see MatrixExpression
+     */
+    public MatrixExpression lazy() {
+        return MatrixExpression.of(this);
+    }
+
     /**
      * Checks if the given row and column indices are valid.
      *
@@ -101,6 +118,7 @@ public class Matrix {
         long rows = this.getRows();
         long cols = other.getCols();
         long inner = this.getCols();
+        long start = PhysicsMetrics.start();
         Matrix result = new Matrix(rows, cols);
 
         for (long i = 0; i < rows; i++) {
@@ -113,6 +131,7 @@ public class Matrix {
             }
         }
 
+        PhysicsMetrics.stop(PhysicsPhase.MATRIX, start);
         return result;
     }
 
@@ -191,6 +210,7 @@ public class Matrix {
         }
 
         if (getRows() == 2) {
+            long start = PhysicsMetrics.start();
             double det = determinant();
             if (det == 0) {
                 throw new ArithmeticException("Matrix is singular and cannot be inverted.");
@@ -200,6 +220,7 @@ public class Matrix {
             result.set(0, 1, -get(0, 1) / det);
             result.set(1, 0, -get(1, 0) / det);
             result.set(1, 1, get(0, 0) / det);
+            PhysicsMetrics.stop(PhysicsPhase.MATRIX, start);
             return result;
         }
 
@@ -388,6 +409,15 @@ public class Matrix {
         return this.multiply(scalingMatrix);
     }
 
+    /**
+     * Converts this matrix to single precision. Values are rounded to the nearest float.
+     *
+     * @return the converted matrix
+     */
+    public FloatMatrix toFloatMatrix() {
+        return FloatMatrix.fromMatrix(this);
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -0,0 +1,664 @@
+package com.advn.physics;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A batch of same-shaped small matrices stored contiguously in one array, for running the same
+ * operation over many independent systems at once.
+ *
+ * <p>Storage is element-major: element {@code (i, j)} of every matrix is stored consecutively, at
+ * {@code data[(i * cols + j) * count + index]}. The closed-form kernels for 1x1 to 3x3 matrices and
+ * the multiply kernel therefore run their innermost loop over the batch index. These loops are
+ * contiguous and branch-free, and the JIT compiles them to SIMD instructions. Larger square
+ * matrices are inverted, solved and reduced to determinants by LU decomposition with partial
+ * pivoting, one matrix at a time, because the pivot rows differ from matrix to matrix.
+ *
+ * <p>Work is split into chunks of matrices that fit in cache. Large batches process their chunks
+ * on the common fork/join pool. A singular matrix fails the whole call with an
+ * {@link ArithmeticException} naming its index.
+ */
+public class MatrixBatch {
+    private static final int CHUNK = 256;
+    private static final int PARALLEL_THRESHOLD = 8 * CHUNK;
+
+    private final int count;
+    private final int rows;
+    private final int cols;
+    private final double[] data;
+
+    /**
+     * Creates a batch of zero matrices.
+     *
+     * @param count the number of matrices
+     * @param rows  the number of rows of each matrix
+     * @param cols  the number of columns of each matrix
+     * @throws IllegalArgumentException if a size is not positive or the batch is too large for one array
+     */
+    public MatrixBatch(int count, int rows, int cols) {
+        if (count < 1 || rows < 1 || cols < 1) {
+            throw new IllegalArgumentException("Batch sizes must be positive.");
+        }
+        if ((long) count * rows * cols > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Batch too large: " + count + " x " + rows + " x " + cols);
+        }
+        this.count = count;
+        this.rows = rows;
+        this.cols = cols;
+        this.data = new double[count * rows * cols];
+    }
+
+    /**
+     * Creates a batch from matrices of equal shape.
+     *
+     * @param matrices the matrices
+     * @return the batch
+     * @throws IllegalArgumentException if there are no matrices or their shapes differ
+     */
+    public static MatrixBatch of(Matrix... matrices) {
+        if (matrices.length == 0) {
+            throw new IllegalArgumentException("Batch cannot be empty.");
+        }
+        MatrixBatch batch = new MatrixBatch(matrices.length, (int) matrices[0].getRows(), (int) matrices[0].getCols());
+        for (int b = 0; b < matrices.length; b++) {
+            batch.setMatrix(b, matrices[b]);
+        }
+        return batch;
+    }
+
+    /**
+     * Gets the number of matrices in the batch.
+     *
+     * @return number of matrices
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the number of rows of each matrix.
+     *
+     * @return number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Gets the number of columns of each matrix.
+     *
+     * @return number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Retrieves one element of one matrix.
+     *
+     * @param index the matrix index
+     * @param row   the row index
+     * @param col   the column index
+     * @return the value
+     * @throws IndexOutOfBoundsException if an index is out of bounds
+     */
+    public double get(int index, int row, int col) {
+        checkIndex(index, row, col);
+        return data[(row * cols + col) * count + index];
+    }
+
+    /**
+     * Sets one element of one matrix.
+     *
+     * @param index the matrix index
+     * @param row   the row index
+     * @param col   the column index
+     * @param value the value
+     * @throws IndexOutOfBoundsException if an index is out of bounds
+     */
+    public void set(int index, int row, int col, double value) {
+        checkIndex(index, row, col);
+        data[(row * cols + col) * count + index] = value;
+    }
+
+    /**
+     * Copies one matrix out of the batch.
+     *
+     * @param index the matrix index
+     * @return the matrix
+     */
+    public Matrix getMatrix(int index) {
+        checkIndex(index, 0, 0);
+        Matrix result = new Matrix(rows, cols);
+        double[][] values = result.rawValues();
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                values[i][j] = data[(i * cols + j) * count + index];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Copies a matrix into the batch.
+     *
+     * @param index  the matrix index
+     * @param matrix the matrix, of the batch's shape
+     * @throws IllegalArgumentException if the shape differs
+     */
+    public void setMatrix(int index, Matrix matrix) {
+        checkIndex(index, 0, 0);
+        if (matrix.getRows() != rows || matrix.getCols() != cols) {
+            throw new IllegalArgumentException("Matrix dimensions do not match the batch.");
+        }
+        double[][] values = matrix.rawValues();
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                data[(i * cols + j) * count + index] = values[i][j];
+            }
+        }
+    }
+
+    /**
+     * Multiplies every matrix with the matrix at the same index of another batch.
+     *
+     * @param other the right-hand batch
+     * @return the batch of products
+     * @throws IllegalArgumentException if the counts differ or the dimensions do not match for multiplication
+     */
+    public MatrixBatch multiply(MatrixBatch other) {
+        MatrixBatch result = new MatrixBatch(count, rows, other.cols);
+        multiplyInto(other, result);
+        return result;
+    }
+
+    /**
+     * Multiplies every matrix with the matrix at the same index of another batch, into an existing batch.
+     *
+     * @param other  the right-hand batch
+     * @param result receives the products; must not be either operand
+     * @throws IllegalArgumentException if the shapes do not match or the result is an operand
+     */
+    public void multiplyInto(MatrixBatch other, MatrixBatch result) {
+        if (other.count != count || cols != other.rows) {
+            throw new IllegalArgumentException("Matrix dimensions do not match for multiplication.");
+        }
+        checkResult(result, rows, other.cols, other);
+        long start = PhysicsMetrics.start();
+        run((from, to) -> multiplyChunk(other, result, from, to));
+        PhysicsMetrics.stop(PhysicsPhase.MATRIX, start);
+    }
+
+    /**
+     * Calculates the determinant of every matrix.
+     *
+     * @return one determinant per matrix
+     * @throws IllegalArgumentException if the matrices are not square
+     */
+    public double[] determinants() {
+        double[] out = new double[count];
+        determinantsInto(out);
+        return out;
+    }
+
+    /**
+     * Calculates the determinant of every matrix into an existing array.
+     *
+     * @param out receives one determinant per matrix
+     * @throws IllegalArgumentException if the matrices are not square or the array is too short
+     */
+    public void determinantsInto(double[] out) {
+        checkSquare("determinant");
+        if (out.length < count) {
+            throw new IllegalArgumentException("Output array is shorter than the batch.");
+        }
+        long start = PhysicsMetrics.start();
+        run((from, to) -> determinantChunk(out, 0, from, to));
+        PhysicsMetrics.stop(PhysicsPhase.MATRIX, start);
+    }
+
+    /**
+     * Inverts every matrix.
+     *
+     * @return the batch of inverses
+     * @throws IllegalArgumentException if the matrices are not square
+     * @throws ArithmeticException if any matrix is singular
+     */
+    public MatrixBatch inverse() {
+        MatrixBatch result = new MatrixBatch(count, rows, cols);
+        inverseInto(result);
+        return result;
+    }
+
+    /**
+     * Inverts every matrix into an existing batch.
+     *
+     * @param result receives the inverses; must not be this batch
+     * @throws IllegalArgumentException if the matrices are not square or the result does not match
+     * @throws ArithmeticException if any matrix is singular
+     */
+    public void inverseInto(MatrixBatch result) {
+        checkSquare("inverse");
+        checkResult(result, rows, cols, null);
+        long start = PhysicsMetrics.start();
+        run((from, to) -> inverseChunk(result, from, to));
+        PhysicsMetrics.stop(PhysicsPhase.MATRIX, start);
+    }
+
+    /**
+     * Solves {@code A X = B} for every matrix {@code A} of this batch and the matching {@code B}.
+     *
+     * @param rhs the right-hand sides, with as many rows as the matrices have
+     * @return the batch of solutions, shaped like {@code rhs}
+     * @throws IllegalArgumentException if the matrices are not square or the shapes do not match
+     * @throws ArithmeticException if any matrix is singular
+     */
+    public MatrixBatch solve(MatrixBatch rhs) {
+        MatrixBatch result = new MatrixBatch(count, rhs.rows, rhs.cols);
+        solveInto(rhs, result);
+        return result;
+    }
+
+    /**
+     * Solves {@code A X = B} for every matrix of this batch into an existing batch.
+     *
+     * @param rhs    the right-hand sides, with as many rows as the matrices have
+     * @param result receives the solutions; must not be this batch or {@code rhs}
+     * @throws IllegalArgumentException if the matrices are not square or the shapes do not match
+     * @throws ArithmeticException if any matrix is singular
+     */
+    public void solveInto(MatrixBatch rhs, MatrixBatch result) {
+        checkSquare("solve");
+        if (rhs.count != count || rhs.rows != rows) {
+            throw new IllegalArgumentException("Matrix dimensions do not match for solving.");
+        }
+        checkResult(result, rhs.rows, rhs.cols, rhs);
+        long start = PhysicsMetrics.start();
+        if (rows <= 3) {
+            run((from, to) -> closedFormSolveChunk(rhs, result, from, to));
+        } else {
+            run((from, to) -> solveChunk(rhs, result, from, to));
+        }
+        PhysicsMetrics.stop(PhysicsPhase.MATRIX, start);
+    }
+
+    // Kernels. Each processes matrices [from, to); element e of matrix b is at data[e * count + b].
+
+    private void multiplyChunk(MatrixBatch other, MatrixBatch result, int from, int to) {
+        int n = count;
+        int inner = cols;
+        int outCols = other.cols;
+        double[] a = data;
+        double[] m = other.data;
+        double[] c = result.data;
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < outCols; j++) {
+                int co = (i * outCols + j) * n;
+                for (int b = from; b < to; b++) {
+                    c[co + b] = 0;
+                }
+                for (int k = 0; k < inner; k++) {
+                    int ao = (i * inner + k) * n;
+                    int mo = (k * outCols + j) * n;
+                    for (int b = from; b < to; b++) {
+                        c[co + b] += a[ao + b] * m[mo + b];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the determinant of matrix {@code b} to {@code out[b - offset]}.
+     */
+    private void determinantChunk(double[] out, int offset, int from, int to) {
+        int n = count;
+        double[] a = data;
+        if (rows == 1) {
+            System.arraycopy(a, from, out, from - offset, to - from);
+        } else if (rows == 2) {
+            for (int b = from; b < to; b++) {
+                out[b - offset] = a[b] * a[3 * n + b] - a[n + b] * a[2 * n + b];
+            }
+        } else if (rows == 3) {
+            for (int b = from; b < to; b++) {
+                out[b - offset] = det3(a, n, b);
+            }
+        } else {
+            int size = rows;
+            double[] lu = new double[size * size];
+            int[] pivots = new int[size];
+            for (int b = from; b < to; b++) {
+                gather(b, lu);
+                out[b - offset] = decompose(lu, size, pivots);
+            }
+        }
+    }
+
+    private void inverseChunk(MatrixBatch result, int from, int to) {
+        int n = count;
+        double[] a = data;
+        double[] r = result.data;
+        if (rows <= 3) {
+            double[] det = new double[to - from];
+            determinantChunk(det, from, from, to);
+            for (int b = from; b < to; b++) {
+                if (det[b - from] == 0) {
+                    throw singular(b);
+                }
+            }
+            if (rows == 1) {
+                for (int b = from; b < to; b++) {
+                    r[b] = 1 / a[b];
+                }
+            } else if (rows == 2) {
+                for (int b = from; b < to; b++) {
+                    double inv = 1 / det[b - from];
+                    double a00 = a[b];
+                    double a01 = a[n + b];
+                    double a10 = a[2 * n + b];
+                    double a11 = a[3 * n + b];
+                    r[b] = a11 * inv;
+                    r[n + b] = -a01 * inv;
+                    r[2 * n + b] = -a10 * inv;
+                    r[3 * n + b] = a00 * inv;
+                }
+            } else {
+                for (int b = from; b < to; b++) {
+                    double inv = 1 / det[b - from];
+                    double a00 = a[b];
+                    double a01 = a[n + b];
+                    double a02 = a[2 * n + b];
+                    double a10 = a[3 * n + b];
+                    double a11 = a[4 * n + b];
+                    double a12 = a[5 * n + b];
+                    double a20 = a[6 * n + b];
+                    double a21 = a[7 * n + b];
+                    double a22 = a[8 * n + b];
+                    r[b] = (a11 * a22 - a12 * a21) * inv;
+                    r[n + b] = (a02 * a21 - a01 * a22) * inv;
+                    r[2 * n + b] = (a01 * a12 - a02 * a11) * inv;
+                    r[3 * n + b] = (a12 * a20 - a10 * a22) * inv;
+                    r[4 * n + b] = (a00 * a22 - a02 * a20) * inv;
+                    r[5 * n + b] = (a02 * a10 - a00 * a12) * inv;
+                    r[6 * n + b] = (a10 * a21 - a11 * a20) * inv;
+                    r[7 * n + b] = (a01 * a20 - a00 * a21) * inv;
+                    r[8 * n + b] = (a00 * a11 - a01 * a10) * inv;
+                }
+            }
+            return;
+        }
+
+        int size = rows;
+        double[] lu = new double[size * size];
+        double[] column = new double[size];
+        int[] pivots = new int[size];
+        for (int b = from; b < to; b++) {
+            gather(b, lu);
+            if (decompose(lu, size, pivots) == 0) {
+                throw singular(b);
+            }
+            for (int j = 0; j < size; j++) {
+                for (int i = 0; i < size; i++) {
+                    column[i] = i == j ? 1 : 0;
+                }
+                substitute(lu, size, pivots, column);
+                for (int i = 0; i < size; i++) {
+                    r[(i * size + j) * n + b] = column[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Solves 1x1 to 3x3 systems by multiplying each right-hand side column with the adjugate over the
+     * determinant. The inverse is formed in registers, one lane at a time, so no scratch batch is needed
+     * and the loops stay vectorized over the batch.
+     */
+    private void closedFormSolveChunk(MatrixBatch rhs, MatrixBatch result, int from, int to) {
+        int n = count;
+        int rhsCols = rhs.cols;
+        double[] a = data;
+        double[] m = rhs.data;
+        double[] x = result.data;
+        double[] det = new double[to - from];
+        determinantChunk(det, from, from, to);
+        for (int b = from; b < to; b++) {
+            if (det[b - from] == 0) {
+                throw singular(b);
+            }
+        }
+        for (int j = 0; j < rhsCols; j++) {
+            if (rows == 1) {
+                for (int b = from; b < to; b++) {
+                    x[j * n + b] = 1 / a[b] * m[j * n + b];
+                }
+            } else if (rows == 2) {
+                int o0 = j * n;
+                int o1 = (rhsCols + j) * n;
+                for (int b = from; b < to; b++) {
+                    double inv = 1 / det[b - from];
+                    double m0 = m[o0 + b];
+                    double m1 = m[o1 + b];
+                    x[o0 + b] = a[3 * n + b] * inv * m0 + -a[n + b] * inv * m1;
+                    x[o1 + b] = -a[2 * n + b] * inv * m0 + a[b] * inv * m1;
+                }
+            } else {
+                int o0 = j * n;
+                int o1 = (rhsCols + j) * n;
+                int o2 = (2 * rhsCols + j) * n;
+                for (int b = from; b < to; b++) {
+                    double inv = 1 / det[b - from];
+                    double a00 = a[b];
+                    double a01 = a[n + b];
+                    double a02 = a[2 * n + b];
+                    double a10 = a[3 * n + b];
+                    double a11 = a[4 * n + b];
+                    double a12 = a[5 * n + b];
+                    double a20 = a[6 * n + b];
+                    double a21 = a[7 * n + b];
+                    double a22 = a[8 * n + b];
+                    double m0 = m[o0 + b];
+                    double m1 = m[o1 + b];
+                    double m2 = m[o2 + b];
+                    x[o0 + b] = (a11 * a22 - a12 * a21) * inv * m0 + (a02 * a21 - a01 * a22) * inv * m1
+                            + (a01 * a12 - a02 * a11) * inv * m2;
+                    x[o1 + b] = (a12 * a20 - a10 * a22) * inv * m0 + (a00 * a22 - a02 * a20) * inv * m1
+                            + (a02 * a10 - a00 * a12) * inv * m2;
+                    x[o2 + b] = (a10 * a21 - a11 * a20) * inv * m0 + (a01 * a20 - a00 * a21) * inv * m1
+                            + (a00 * a11 - a01 * a10) * inv * m2;
+                }
+            }
+        }
+    }
+
+    private void solveChunk(MatrixBatch rhs, MatrixBatch result, int from, int to) {
+        int n = count;
+        int size = rows;
+        int rhsCols = rhs.cols;
+        double[] lu = new double[size * size];
+        double[] column = new double[size];
+        int[] pivots = new int[size];
+        for (int b = from; b < to; b++) {
+            gather(b, lu);
+            if (decompose(lu, size, pivots) == 0) {
+                throw singular(b);
+            }
+            for (int j = 0; j < rhsCols; j++) {
+                for (int i = 0; i < size; i++) {
+                    column[i] = rhs.data[(i * rhsCols + j) * n + b];
+                }
+                substitute(lu, size, pivots, column);
+                for (int i = 0; i < size; i++) {
+                    result.data[(i * rhsCols + j) * n + b] = column[i];
+                }
+            }
+        }
+    }
+
+    private static double det3(double[] a, int n, int b) {
+        double a00 = a[b];
+        double a01 = a[n + b];
+        double a02 = a[2 * n + b];
+        double a10 = a[3 * n + b];
+        double a11 = a[4 * n + b];
+        double a12 = a[5 * n + b];
+        double a20 = a[6 * n + b];
+        double a21 = a[7 * n + b];
+        double a22 = a[8 * n + b];
+        return a00 * (a11 * a22 - a12 * a21) + a01 * (a12 * a20 - a10 * a22) + a02 * (a10 * a21 - a11 * a20);
+    }
+
+    private void gather(int b, double[] out) {
+        for (int e = 0; e < out.length; e++) {
+            out[e] = data[e * count + b];
+        }
+    }
+
+    /**
+     * LU decomposition with partial pivoting, in place; {@code pivots[k]} is the row swapped into row k.
+     *
+     * @return the determinant, or 0 if the matrix is singular
+     */
+    private static double decompose(double[] lu, int size, int[] pivots) {
+        double det = 1;
+        for (int k = 0; k < size; k++) {
+            int pivot = k;
+            double max = Math.abs(lu[k * size + k]);
+            for (int i = k + 1; i < size; i++) {
+                double v = Math.abs(lu[i * size + k]);
+                if (v > max) {
+                    max = v;
+                    pivot = i;
+                }
+            }
+            pivots[k] = pivot;
+            if (max == 0) {
+                return 0;
+            }
+            if (pivot != k) {
+                for (int j = 0; j < size; j++) {
+                    double t = lu[k * size + j];
+                    lu[k * size + j] = lu[pivot * size + j];
+                    lu[pivot * size + j] = t;
+                }
+                det = -det;
+            }
+            double diagonal = lu[k * size + k];
+            det *= diagonal;
+            for (int i = k + 1; i < size; i++) {
+                double factor = lu[i * size + k] / diagonal;
+                lu[i * size + k] = factor;
+                for (int j = k + 1; j < size; j++) {
+                    lu[i * size + j] -= factor * lu[k * size + j];
+                }
+            }
+        }
+        return det;
+    }
+
+    /**
+     * Solves {@code LU x = P b} in place, given the output of {@link #decompose}.
+     */
+    private static void substitute(double[] lu, int size, int[] pivots, double[] x) {
+        for (int k = 0; k < size; k++) {
+            int p = pivots[k];
+            if (p != k) {
+                double t = x[k];
+                x[k] = x[p];
+                x[p] = t;
+            }
+        }
+        for (int i = 1; i < size; i++) {
+            double sum = x[i];
+            for (int j = 0; j < i; j++) {
+                sum -= lu[i * size + j] * x[j];
+            }
+            x[i] = sum;
+        }
+        for (int i = size - 1; i >= 0; i--) {
+            double sum = x[i];
+            for (int j = i + 1; j < size; j++) {
+                sum -= lu[i * size + j] * x[j];
+            }
+            x[i] = sum / lu[i * size + i];
+        }
+    }
+
+    private void run(Kernel kernel) {
+        if (count >= PARALLEL_THRESHOLD) {
+            try {
+                ForkJoinPool.commonPool().invoke(new ChunkTask(kernel, 0, count));
+            } catch (ArithmeticException e) {
+                // The pool rethrows a copy without the message when the kernel failed on another thread.
+                throw e.getCause() instanceof ArithmeticException ? (ArithmeticException) e.getCause() : e;
+            }
+        } else {
+            for (int from = 0; from < count; from += CHUNK) {
+                kernel.run(from, Math.min(count, from + CHUNK));
+            }
+        }
+    }
+
+    private void checkIndex(int index, int row, int col) {
+        if (index < 0 || index >= count || row < 0 || row >= rows || col < 0 || col >= cols) {
+            throw new IndexOutOfBoundsException("Invalid index: " + index + " (" + row + ", " + col + ").");
+        }
+    }
+
+    private void checkSquare(String operation) {
+        if (rows != cols) {
+            throw new IllegalArgumentException("Matrix must be square to compute " + operation + ".");
+        }
+    }
+
+    private void checkResult(MatrixBatch result, int resultRows, int resultCols, MatrixBatch operand) {
+        if (result.count != count || result.rows != resultRows || result.cols != resultCols) {
+            throw new IllegalArgumentException("Result batch has the wrong shape.");
+        }
+        if (result == this || result == operand) {
+            throw new IllegalArgumentException("Result batch must not be an operand.");
+        }
+    }
+
+    private static ArithmeticException singular(int index) {
+        return new ArithmeticException("Matrix " + index + " of the batch is singular and cannot be inverted.");
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MatrixBatch(count: %d, %dx%d)", count, rows, cols);
+    }
+
+    @FunctionalInterface
+    private interface Kernel {
+        void run(int from, int to);
+    }
+
+    @SuppressWarnings("serial") // Never serialized; only forked on the common pool.
+    private static final class ChunkTask extends RecursiveAction {
+        private final Kernel kernel;
+        private final int from;
+        private final int to;
+
+        ChunkTask(Kernel kernel, int from, int to) {
+            this.kernel = kernel;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK) {
+                kernel.run(from, to);
+                return;
+            }
+            // Split on a chunk boundary so every leaf works on whole chunks.
+            int mid = from + ((to - from) / CHUNK / 2) * CHUNK;
+            if (mid == from) {
+                mid = from + CHUNK;
+            }
+            invokeAll(new ChunkTask(kernel, from, mid), new ChunkTask(kernel, mid, to));
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package com.advn.physics;
+
+import java.util.Arrays;
+
+/**
+ * A lazily evaluated matrix expression built from {@link Matrix} operands.
+ *
+ * <p>Building an expression only records the operation tree. {@link #evaluate()} first rewrites the
+ * tree into a sum of scaled terms, where each term is either a plain matrix or a product of two
+ * matrices, and then produces every output row in a single pass: the row is initialised from the
+ * scaled plain terms and the products are accumulated into it while it is still in cache. An
+ * expression such as {@code A.lazy().multiply(B).scalarMultiply(a).add(C.lazy().scalarMultiply(b))}
+ * is therefore evaluated as one GEMM kernel {@code aAB + bC} with a single output buffer.
+ *
+ * <p>Product operands that are themselves sums or products are evaluated into a temporary first.
+ * Operands are read at evaluation time, not when the expression is built.
+ */
+public abstract class MatrixExpression {
+    private final long rows;
+    private final long cols;
+
+    private MatrixExpression(long rows, long cols) {
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    /**
+     * Wraps a matrix as the leaf of an expression.
+     *
+     * @param matrix the matrix
+     * @return the expression
+     */
+    public static MatrixExpression of(Matrix matrix) {
+        return new Leaf(matrix);
+    }
+
+    /**
+     * Gets the number of rows of the result.
+     *
+     * @return number of rows
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Gets the number of columns of the result.
+     *
+     * @return number of columns
+     */
+    public long getCols() {
+        return cols;
+    }
+
+    /**
+     * Multiplies this expression with another expression.
+     *
+     * @param other the right-hand operand
+     * @return the product expression
+     * @throws IllegalArgumentException if dimensions do not match for multiplication
+     */
+    public MatrixExpression multiply(MatrixExpression other) {
+        if (this.cols != other.rows) {
+            throw new IllegalArgumentException("Matrix dimensions do not match for multiplication.");
+        }
+        return new Product(this, other);
+    }
+
+    /**
+     * Multiplies this expression with a matrix.
+     *
+     * @param other the right-hand operand
+     * @return the product expression
+     * @throws IllegalArgumentException if dimensions do not match for multiplication
+     */
+    public MatrixExpression multiply(Matrix other) {
+        return multiply(of(other));
+    }
+
+    /**
+     * Adds another expression to this expression.
+     *
+     * @param other the expression to add
+     * @return the sum expression
+     * @throws IllegalArgumentException if dimensions do not match for addition
+     */
+    public MatrixExpression add(MatrixExpression other) {
+        if (this.rows != other.rows || this.cols != other.cols) {
+            throw new IllegalArgumentException("Matrix dimensions do not match for addition.");
+        }
+        return new Sum(this, other);
+    }
+
+    /**
+     * Adds a matrix to this expression.
+     *
+     * @param other the matrix to add
+     * @return the sum expression
+     * @throws IllegalArgumentException if dimensions do not match for addition
+     */
+    public MatrixExpression add(Matrix other) {
+        return add(of(other));
+    }
+
+    /**
+     * Subtracts another expression from this expression.
+     *
+     * @param other the expression to subtract
+     * @return the difference expression
+     * @throws IllegalArgumentException if dimensions do not match for addition
+     */
+    public MatrixExpression subtract(MatrixExpression other) {
+        return add(other.scalarMultiply(-1));
+    }
+
+    /**
+     * Subtracts a matrix from this expression.
+     *
+     * @param other the matrix to subtract
+     * @return the difference expression
+     * @throws IllegalArgumentException if dimensions do not match for addition
+     */
+    public MatrixExpression subtract(Matrix other) {
+        return subtract(of(other));
+    }
+
+    /**
+     * Multiplies this expression by a scalar.
+     *
+     * @param scalar the scalar value
+     * @return the scaled expression
+     */
+    public MatrixExpression scalarMultiply(double scalar) {
+        return new Scaled(this, scalar);
+    }
+
+    /**
+     * Evaluates the expression into a new matrix.
+     *
+     * @return the result
+     */
+    public Matrix evaluate() {
+        Matrix result = new Matrix(rows, cols);
+        evaluateInto(result);
+        return result;
+    }
+
+    /**
+     * Evaluates the expression into an existing matrix, overwriting its contents.
+     * The target may also appear as an operand of the expression.
+     *
+     * @param target the matrix that receives the result
+     * @return the target
+     * @throws IllegalArgumentException if the target has the wrong dimensions
+     */
+    public Matrix evaluateInto(Matrix target) {
+        if (target.getRows() != rows || target.getCols() != cols) {
+            throw new IllegalArgumentException("Target matrix dimensions do not match the expression.");
+        }
+        long start = PhysicsMetrics.start();
+        compute(target.rawValues());
+        PhysicsMetrics.stop(PhysicsPhase.MATRIX, start);
+        return target;
+    }
+
+    /**
+     * Evaluates the expression into {@code out} without recording metrics, so nested evaluations
+     * of product operands are charged only to the outermost {@link #evaluateInto}.
+     */
+    private void compute(double[][] out) {
+        Terms terms = new Terms();
+        collect(1.0, terms);
+
+        if (terms.readsInProduct(out)) {
+            // Products read whole rows of their operands, so they cannot write into one of them.
+            double[][] scratch = new double[(int) rows][(int) cols];
+            run(terms, scratch);
+            for (int i = 0; i < scratch.length; i++) {
+                System.arraycopy(scratch[i], 0, out[i], 0, scratch[i].length);
+            }
+        } else {
+            run(terms, out);
+        }
+    }
+
+    /**
+     * Appends this expression, multiplied by {@code coefficient}, to the flattened term list.
+     */
+    abstract void collect(double coefficient, Terms terms);
+
+    /**
+     * Returns the values of this expression, evaluating it into a temporary unless it is a plain leaf.
+     */
+    double[][] materialize() {
+        double[][] values = new Matrix(rows, cols).rawValues();
+        compute(values);
+        return values;
+    }
+
+    /**
+     * The fused kernel: one pass over the output rows, plain terms first, then every product accumulated into the row.
+     */
+    private static void run(Terms terms, double[][] out) {
+        terms.movePlainToFront(out);
+        int cols = out[0].length;
+        for (int i = 0; i < out.length; i++) {
+            double[] row = out[i];
+            if (terms.plainCount == 0) {
+                Arrays.fill(row, 0.0);
+            } else {
+                double c0 = terms.plainCoefficients[0];
+                double[] p0 = terms.plain[0][i];
+                for (int j = 0; j < cols; j++) {
+                    row[j] = c0 * p0[j];
+                }
+                for (int t = 1; t < terms.plainCount; t++) {
+                    double c = terms.plainCoefficients[t];
+                    double[] p = terms.plain[t][i];
+                    for (int j = 0; j < cols; j++) {
+                        row[j] += c * p[j];
+                    }
+                }
+            }
+            for (int t = 0; t < terms.productCount; t++) {
+                double alpha = terms.productCoefficients[t];
+                double[] aRow = terms.productLeft[t][i];
+                double[][] b = terms.productRight[t];
+                for (int k = 0; k < aRow.length; k++) {
+                    double aik = alpha * aRow[k];
+                    double[] bRow = b[k];
+                    for (int j = 0; j < cols; j++) {
+                        row[j] += aik * bRow[j];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The flattened form of an expression: a sum of scaled plain matrices and scaled two-operand products.
+     */
+    static final class Terms {
+        double[][][] plain = new double[2][][];
+        double[] plainCoefficients = new double[2];
+        int plainCount;
+        double[][][] productLeft = new double[2][][];
+        double[][][] productRight = new double[2][][];
+        double[] productCoefficients = new double[2];
+        int productCount;
+
+        void addPlain(double coefficient, double[][] values) {
+            for (int t = 0; t < plainCount; t++) {
+                if (plain[t] == values) {
+                    plainCoefficients[t] += coefficient;
+                    return;
+                }
+            }
+            if (plainCount == plain.length) {
+                plain = Arrays.copyOf(plain, plainCount * 2);
+                plainCoefficients = Arrays.copyOf(plainCoefficients, plainCount * 2);
+            }
+            plain[plainCount] = values;
+            plainCoefficients[plainCount] = coefficient;
+            plainCount++;
+        }
+
+        void addProduct(double coefficient, double[][] left, double[][] right) {
+            if (productCount == productLeft.length) {
+                productLeft = Arrays.copyOf(productLeft, productCount * 2);
+                productRight = Arrays.copyOf(productRight, productCount * 2);
+                productCoefficients = Arrays.copyOf(productCoefficients, productCount * 2);
+            }
+            productLeft[productCount] = left;
+            productRight[productCount] = right;
+            productCoefficients[productCount] = coefficient;
+            productCount++;
+        }
+
+        boolean readsInProduct(double[][] values) {
+            for (int t = 0; t < productCount; t++) {
+                if (productLeft[t] == values || productRight[t] == values) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Makes the output the first plain term, if it is one, so each row is read before it is overwritten.
+         */
+        void movePlainToFront(double[][] out) {
+            for (int t = 1; t < plainCount; t++) {
+                if (plain[t] == out) {
+                    plain[t] = plain[0];
+                    plain[0] = out;
+                    double coefficient = plainCoefficients[t];
+                    plainCoefficients[t] = plainCoefficients[0];
+                    plainCoefficients[0] = coefficient;
+                    return;
+                }
+            }
+        }
+    }
+
+    private static final class Leaf extends MatrixExpression {
+        private final Matrix matrix;
+
+        Leaf(Matrix matrix) {
+            super(matrix.getRows(), matrix.getCols());
+            this.matrix = matrix;
+        }
+
+        @Override
+        void collect(double coefficient, Terms terms) {
+            terms.addPlain(coefficient, matrix.rawValues());
+        }
+
+        @Override
+        double[][] materialize() {
+            return matrix.rawValues();
+        }
+    }
+
+    private static final class Scaled extends MatrixExpression {
+        private final MatrixExpression operand;
+        private final double scalar;
+
+        Scaled(MatrixExpression operand, double scalar) {
+            super(operand.getRows(), operand.getCols());
+            this.operand = operand;
+            this.scalar = scalar;
+        }
+
+        @Override
+        void collect(double coefficient, Terms terms) {
+            operand.collect(coefficient * scalar, terms);
+        }
+    }
+
+    private static final class Sum extends MatrixExpression {
+        private final MatrixExpression left;
+        private final MatrixExpression right;
+
+        Sum(MatrixExpression left, MatrixExpression right) {
+            super(left.getRows(), left.getCols());
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        void collect(double coefficient, Terms terms) {
+            left.collect(coefficient, terms);
+            right.collect(coefficient, terms);
+        }
+    }
+
+    private static final class Product extends MatrixExpression {
+        private final MatrixExpression left;
+        private final MatrixExpression right;
+
+        Product(MatrixExpression left, MatrixExpression right) {
+            super(left.getRows(), right.getCols());
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        void collect(double coefficient, Terms terms) {
+            // Pull scalar factors out of the operands so (aA)(bB) becomes ab * AB on the plain leaves.
+            double factor = coefficient;
+            MatrixExpression l = left;
+            while (l instanceof Scaled) {
+                factor *= ((Scaled) l).scalar;
+                l = ((Scaled) l).operand;
+            }
+            MatrixExpression r = right;
+            while (r instanceof Scaled) {
+                factor *= ((Scaled) r).scalar;
+                r = ((Scaled) r).operand;
+            }
+            terms.addProduct(factor, l.materialize(), r.materialize());
+        }
+    }
+}
@@ -0,0 +1,972 @@
+package com.advn.physics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Streaming readers and writers for {@link Matrix}.
+ *
+ * <p>Two formats are supported:
+ * <ul>
+ *   <li>A raw binary format: the magic bytes {@code ADVM}, an int32 version (1), int64 rows, int64 cols,
+ *       then the values as little-endian float64 in row-major order.</li>
+ *   <li>The Matrix Market text format, as dense {@code array} or sparse {@code coordinate} data with
+ *       {@code real}, {@code integer} or {@code pattern} fields and {@code general}, {@code symmetric}
+ *       or {@code skew-symmetric} symmetry.</li>
+ * </ul>
+ *
+ * <p>All I/O goes through NIO channels with a direct buffer taken from a small shared pool, so repeated
+ * calls do not allocate new ones. Text numbers are parsed directly from
+ * the bytes; only values that cannot be converted exactly by the fast path fall back to
+ * {@link Double#parseDouble(String)}. Readers accept a half-open row range to load part of a matrix.
+ */
+public final class MatrixIO {
+    private static final int BUFFER_SIZE = 1 << 20;
+    // A few idle buffers are enough for the usual number of concurrent readers and writers.
+    private static final ArrayBlockingQueue<ByteBuffer> BUFFER_POOL = new ArrayBlockingQueue<>(4);
+    private static final int MAGIC = 0x4D564441; // "ADVM" read as a little-endian int
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+    private static final int PROGRESS_INTERVAL = 1 << 16;
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private MatrixIO() {
+    }
+
+    /**
+     * Receives progress while a matrix is read or written.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * Called periodically and once on completion.
+         *
+         * @param done  the units processed so far (rows for binary data, entries for Matrix Market data)
+         * @param total the total number of units
+         */
+        void onProgress(long done, long total);
+    }
+
+    /**
+     * Receives consecutive blocks of rows from {@link #readBinaryChunks}.
+     */
+    @FunctionalInterface
+    public interface ChunkConsumer {
+        /**
+         * Called once per block, in row order.
+         *
+         * @param rows     the rows of the block
+         * @param firstRow the index of the block's first row in the file
+         * @throws IOException if the consumer fails
+         */
+        void accept(Matrix rows, long firstRow) throws IOException;
+    }
+
+    // Binary format
+
+    /**
+     * Writes a matrix in the binary format.
+     *
+     * @param matrix the matrix
+     * @param path   the file to create or overwrite
+     * @throws IOException if writing fails
+     */
+    public static void writeBinary(Matrix matrix, Path path) throws IOException {
+        writeBinary(matrix, path, null);
+    }
+
+    /**
+     * Writes a matrix in the binary format.
+     *
+     * @param matrix   the matrix
+     * @param path     the file to create or overwrite
+     * @param listener receives progress in rows, or null
+     * @throws IOException if writing fails
+     */
+    public static void writeBinary(Matrix matrix, Path path, ProgressListener listener) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeBinary(matrix, channel, listener);
+        }
+    }
+
+    /**
+     * Writes a matrix in the binary format to a channel.
+     *
+     * @param matrix   the matrix
+     * @param channel  the channel to write to; it is not closed
+     * @param listener receives progress in rows, or null
+     * @throws IOException if writing fails
+     */
+    public static void writeBinary(Matrix matrix, WritableByteChannel channel, ProgressListener listener) throws IOException {
+        double[][] values = matrix.rawValues();
+        int rows = values.length;
+        int cols = values[0].length;
+        ByteBuffer buffer = borrowBuffer();
+        try {
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(rows).putLong(cols);
+
+            for (int i = 0; i < rows; i++) {
+                double[] row = values[i];
+                int j = 0;
+                while (j < cols) {
+                    if (buffer.remaining() < Double.BYTES) {
+                        drain(buffer, channel);
+                    }
+                    int n = Math.min(cols - j, buffer.remaining() / Double.BYTES);
+                    DoubleBuffer doubles = buffer.asDoubleBuffer();
+                    doubles.put(row, j, n);
+                    buffer.position(buffer.position() + n * Double.BYTES);
+                    j += n;
+                }
+                if (listener != null && (i + 1) % progressRows(cols) == 0) {
+                    listener.onProgress(i + 1, rows);
+                }
+            }
+            drain(buffer, channel);
+            if (listener != null) {
+                listener.onProgress(rows, rows);
+            }
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    /**
+     * Reads a whole matrix in the binary format.
+     *
+     * @param path the file to read
+     * @return the matrix
+     * @throws IOException if reading fails or the file is not in the binary format
+     */
+    public static Matrix readBinary(Path path) throws IOException {
+        return readBinary(path, 0, -1, null);
+    }
+
+    /**
+     * Reads only the header of a matrix in the binary format.
+     *
+     * @param path the file to read
+     * @return the number of rows and columns, in that order
+     * @throws IOException if reading fails or the file is not in the binary format
+     */
+    public static long[] readBinaryDimensions(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return readHeader(channel, ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN));
+        }
+    }
+
+    /**
+     * Reads a whole matrix in the binary format as consecutive blocks of rows, so a matrix larger than
+     * the heap can be processed block by block. The file is opened once and read through one buffer.
+     *
+     * @param path      the file to read
+     * @param chunkRows the maximum number of rows per block
+     * @param consumer  receives each block
+     * @throws IOException if reading fails, the file is not in the binary format or the consumer fails
+     * @throws IllegalArgumentException if {@code chunkRows} is not positive
+     */
+    public static void readBinaryChunks(Path path, int chunkRows, ChunkConsumer consumer) throws IOException {
+        if (chunkRows < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive.");
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = borrowBuffer();
+            try {
+                long[] size = readHeader(channel, buffer);
+                long rows = size[0];
+                buffer.clear();
+                buffer.flip();
+                for (long start = 0; start < rows; start += chunkRows) {
+                    Matrix chunk = new Matrix(Math.min(chunkRows, rows - start), size[1]);
+                    readRows(channel, buffer, chunk.rawValues(), null);
+                    consumer.accept(chunk, start);
+                }
+            } finally {
+                releaseBuffer(buffer);
+            }
+        }
+    }
+
+    /**
+     * Reads rows {@code [rowStart, rowEnd)} of a matrix in the binary format, seeking past the rows before the range.
+     *
+     * @param path     the file to read
+     * @param rowStart the first row to load
+     * @param rowEnd   one past the last row to load, or -1 for all remaining rows
+     * @param listener receives progress in rows, or null
+     * @return the loaded rows as a matrix
+     * @throws IOException if reading fails or the file is not in the binary format
+     * @throws IllegalArgumentException if the row range is invalid
+     */
+    public static Matrix readBinary(Path path, long rowStart, long rowEnd, ProgressListener listener) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return readBinary(channel, rowStart, rowEnd, listener);
+        }
+    }
+
+    /**
+     * Reads rows {@code [rowStart, rowEnd)} of a matrix in the binary format from a channel.
+     * File channels seek past skipped rows; other channels read through them.
+     *
+     * @param channel  the channel to read from; it is not closed
+     * @param rowStart the first row to load
+     * @param rowEnd   one past the last row to load, or -1 for all remaining rows
+     * @param listener receives progress in rows, or null
+     * @return the loaded rows as a matrix
+     * @throws IOException if reading fails or the data is not in the binary format
+     * @throws IllegalArgumentException if the row range is invalid
+     */
+    public static Matrix readBinary(ReadableByteChannel channel, long rowStart, long rowEnd,
+                                    ProgressListener listener) throws IOException {
+        ByteBuffer buffer = borrowBuffer();
+        try {
+            long[] size = readHeader(channel, buffer);
+            long rows = size[0];
+            long cols = size[1];
+            long end = rowEnd < 0 ? rows : rowEnd;
+            checkRange(rowStart, end, rows);
+
+            long skipBytes = rowStart * cols * Double.BYTES;
+            if (channel instanceof FileChannel) {
+                FileChannel file = (FileChannel) channel;
+                file.position(file.position() + skipBytes);
+            } else {
+                skip(channel, buffer, skipBytes);
+            }
+
+            Matrix result = new Matrix(end - rowStart, cols);
+            buffer.clear();
+            buffer.flip();
+            readRows(channel, buffer, result.rawValues(), listener);
+            return result;
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    /**
+     * Reads and validates the header of the binary format.
+     *
+     * @return the number of rows and columns, in that order
+     */
+    private static long[] readHeader(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        buffer.limit(HEADER_BYTES);
+        readFully(channel, buffer);
+        buffer.flip();
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a binary matrix file.");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary matrix version: " + version);
+        }
+        long rows = buffer.getLong();
+        long cols = buffer.getLong();
+        checkSize(rows, cols);
+        return new long[] {rows, cols};
+    }
+
+    /**
+     * Fills {@code values} row by row from the channel, using and leaving behind any bytes already in the buffer.
+     */
+    private static void readRows(ReadableByteChannel channel, ByteBuffer buffer, double[][] values,
+                                 ProgressListener listener) throws IOException {
+        int loadRows = values.length;
+        int width = values[0].length;
+        for (int i = 0; i < loadRows; i++) {
+            double[] row = values[i];
+            int j = 0;
+            while (j < width) {
+                if (buffer.remaining() < Double.BYTES) {
+                    refill(channel, buffer, Double.BYTES);
+                }
+                int n = Math.min(width - j, buffer.remaining() / Double.BYTES);
+                buffer.asDoubleBuffer().get(row, j, n);
+                buffer.position(buffer.position() + n * Double.BYTES);
+                j += n;
+            }
+            if (listener != null && (i + 1) % progressRows(width) == 0) {
+                listener.onProgress(i + 1, loadRows);
+            }
+        }
+        if (listener != null) {
+            listener.onProgress(loadRows, loadRows);
+        }
+    }
+
+    // Matrix Market format
+
+    /**
+     * Writes a matrix in the Matrix Market format.
+     *
+     * @param matrix the matrix
+     * @param path   the file to create or overwrite
+     * @param sparse true for {@code coordinate} format with only non-zero entries, false for dense {@code array} format
+     * @throws IOException if writing fails
+     */
+    public static void writeMatrixMarket(Matrix matrix, Path path, boolean sparse) throws IOException {
+        writeMatrixMarket(matrix, path, sparse, null);
+    }
+
+    /**
+     * Writes a matrix in the Matrix Market format.
+     *
+     * @param matrix   the matrix
+     * @param path     the file to create or overwrite
+     * @param sparse   true for {@code coordinate} format with only non-zero entries, false for dense {@code array} format
+     * @param listener receives progress in entries, or null
+     * @throws IOException if writing fails
+     */
+    public static void writeMatrixMarket(Matrix matrix, Path path, boolean sparse, ProgressListener listener) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeMatrixMarket(matrix, channel, sparse, listener);
+        }
+    }
+
+    /**
+     * Writes a matrix in the Matrix Market format to a channel.
+     *
+     * @param matrix   the matrix
+     * @param channel  the channel to write to; it is not closed
+     * @param sparse   true for {@code coordinate} format with only non-zero entries, false for dense {@code array} format
+     * @param listener receives progress in entries, or null
+     * @throws IOException if writing fails
+     */
+    public static void writeMatrixMarket(Matrix matrix, WritableByteChannel channel, boolean sparse,
+                                         ProgressListener listener) throws IOException {
+        double[][] values = matrix.rawValues();
+        int rows = values.length;
+        int cols = values[0].length;
+        ByteBuffer buffer = borrowBuffer();
+        StringBuilder digits = new StringBuilder(32);
+        try {
+            if (sparse) {
+                long nonZeros = 0;
+                for (double[] row : values) {
+                    for (double value : row) {
+                        if (value != 0) nonZeros++;
+                    }
+                }
+                putAscii(buffer, channel, "%%MatrixMarket matrix coordinate real general\n");
+                putAscii(buffer, channel, rows + " " + cols + " " + nonZeros + "\n");
+                long written = 0;
+                for (int i = 0; i < rows; i++) {
+                    for (int j = 0; j < cols; j++) {
+                        double value = values[i][j];
+                        if (value == 0) {
+                            continue;
+                        }
+                        ensureRoom(buffer, channel, 64);
+                        putLong(buffer, i + 1);
+                        buffer.put((byte) ' ');
+                        putLong(buffer, j + 1);
+                        buffer.put((byte) ' ');
+                        putDouble(buffer, digits, value);
+                        buffer.put((byte) '\n');
+                        written++;
+                        if (listener != null && written % PROGRESS_INTERVAL == 0) {
+                            listener.onProgress(written, nonZeros);
+                        }
+                    }
+                }
+                drain(buffer, channel);
+                if (listener != null) {
+                    listener.onProgress(nonZeros, nonZeros);
+                }
+            } else {
+                long total = (long) rows * cols;
+                putAscii(buffer, channel, "%%MatrixMarket matrix array real general\n");
+                putAscii(buffer, channel, rows + " " + cols + "\n");
+                long written = 0;
+                // The array format is column-major.
+                for (int j = 0; j < cols; j++) {
+                    for (int i = 0; i < rows; i++) {
+                        ensureRoom(buffer, channel, 32);
+                        putDouble(buffer, digits, values[i][j]);
+                        buffer.put((byte) '\n');
+                        written++;
+                        if (listener != null && written % PROGRESS_INTERVAL == 0) {
+                            listener.onProgress(written, total);
+                        }
+                    }
+                }
+                drain(buffer, channel);
+                if (listener != null) {
+                    listener.onProgress(total, total);
+                }
+            }
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    /**
+     * Reads a whole matrix in the Matrix Market format.
+     *
+     * @param path the file to read
+     * @return the matrix
+     * @throws IOException if reading fails or the file is malformed
+     */
+    public static Matrix readMatrixMarket(Path path) throws IOException {
+        return readMatrixMarket(path, 0, -1, null);
+    }
+
+    /**
+     * Reads rows {@code [rowStart, rowEnd)} of a matrix in the Matrix Market format.
+     * The whole file is scanned; entries outside the range are parsed and dropped.
+     *
+     * @param path     the file to read
+     * @param rowStart the first row to load
+     * @param rowEnd   one past the last row to load, or -1 for all remaining rows
+     * @param listener receives progress in entries, or null
+     * @return the loaded rows as a matrix
+     * @throws IOException if reading fails or the file is malformed
+     * @throws IllegalArgumentException if the row range is invalid
+     */
+    public static Matrix readMatrixMarket(Path path, long rowStart, long rowEnd, ProgressListener listener) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return readMatrixMarket(channel, rowStart, rowEnd, listener);
+        }
+    }
+
+    /**
+     * Reads rows {@code [rowStart, rowEnd)} of a matrix in the Matrix Market format from a channel.
+     *
+     * @param channel  the channel to read from; it is not closed
+     * @param rowStart the first row to load
+     * @param rowEnd   one past the last row to load, or -1 for all remaining rows
+     * @param listener receives progress in entries, or null
+     * @return the loaded rows as a matrix
+     * @throws IOException if reading fails or the data is malformed
+     * @throws IllegalArgumentException if the row range is invalid
+     */
+    public static Matrix readMatrixMarket(ReadableByteChannel channel, long rowStart, long rowEnd,
+                                          ProgressListener listener) throws IOException {
+        ByteBuffer buffer = borrowBuffer();
+        try {
+            return readMatrixMarket(new TextReader(channel, buffer), rowStart, rowEnd, listener);
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    private static Matrix readMatrixMarket(TextReader in, long rowStart, long rowEnd, ProgressListener listener)
+            throws IOException {
+        String[] header = in.readLine().trim().toLowerCase(Locale.ROOT).split("\\s+");
+        if (header.length != 5 || !header[0].equals("%%matrixmarket") || !header[1].equals("matrix")) {
+            throw new IOException("Invalid Matrix Market header.");
+        }
+        boolean coordinate;
+        if (header[2].equals("coordinate")) {
+            coordinate = true;
+        } else if (header[2].equals("array")) {
+            coordinate = false;
+        } else {
+            throw new IOException("Unsupported Matrix Market format: " + header[2]);
+        }
+        String field = header[3];
+        boolean pattern = field.equals("pattern");
+        if (!pattern && !field.equals("real") && !field.equals("integer") && !field.equals("double")) {
+            throw new IOException("Unsupported Matrix Market field: " + field);
+        }
+        if (pattern && !coordinate) {
+            throw new IOException("Pattern field requires coordinate format.");
+        }
+        String symmetry = header[4];
+        boolean symmetric = symmetry.equals("symmetric");
+        boolean skew = symmetry.equals("skew-symmetric");
+        if (!symmetric && !skew && !symmetry.equals("general")) {
+            throw new IOException("Unsupported Matrix Market symmetry: " + symmetry);
+        }
+
+        in.skipComments();
+        long rows = in.parseLong();
+        long cols = in.parseLong();
+        long entries = coordinate ? in.parseLong() : rows * cols;
+        checkSize(rows, cols);
+        long end = rowEnd < 0 ? rows : rowEnd;
+        checkRange(rowStart, end, rows);
+
+        Matrix result = new Matrix(end - rowStart, cols);
+        double[][] values = result.rawValues();
+        if (coordinate) {
+            for (long k = 0; k < entries; k++) {
+                long i = in.parseLong() - 1;
+                long j = in.parseLong() - 1;
+                double value = pattern ? 1.0 : in.parseDouble();
+                if (i < 0 || i >= rows || j < 0 || j >= cols) {
+                    throw new IOException("Entry index out of range: (" + (i + 1) + ", " + (j + 1) + ").");
+                }
+                store(values, rowStart, end, i, j, value);
+                if ((symmetric || skew) && i != j) {
+                    store(values, rowStart, end, j, i, skew ? -value : value);
+                }
+                if (listener != null && (k + 1) % PROGRESS_INTERVAL == 0) {
+                    listener.onProgress(k + 1, entries);
+                }
+            }
+        } else if (symmetric || skew) {
+            // Only the lower triangle is stored, column by column.
+            long k = 0;
+            for (long j = 0; j < cols; j++) {
+                for (long i = skew ? j + 1 : j; i < rows; i++) {
+                    double value = in.parseDouble();
+                    store(values, rowStart, end, i, j, value);
+                    if (i != j) {
+                        store(values, rowStart, end, j, i, skew ? -value : value);
+                    }
+                    if (listener != null && ++k % PROGRESS_INTERVAL == 0) {
+                        listener.onProgress(k, entries);
+                    }
+                }
+            }
+        } else {
+            for (long k = 0; k < entries; k++) {
+                double value = in.parseDouble();
+                store(values, rowStart, end, k % rows, k / rows, value);
+                if (listener != null && (k + 1) % PROGRESS_INTERVAL == 0) {
+                    listener.onProgress(k + 1, entries);
+                }
+            }
+        }
+        if (listener != null) {
+            listener.onProgress(entries, entries);
+        }
+        return result;
+    }
+
+    private static void store(double[][] values, long rowStart, long rowEnd, long i, long j, double value) {
+        if (i >= rowStart && i < rowEnd) {
+            values[(int) (i - rowStart)][(int) j] = value;
+        }
+    }
+
+    // Helpers
+
+    /**
+     * Takes an I/O buffer from the pool, or allocates one if the pool is empty. Direct buffers are
+     * costly to allocate and are only freed by the garbage collector, so repeated calls reuse them.
+     */
+    private static ByteBuffer borrowBuffer() {
+        ByteBuffer buffer = BUFFER_POOL.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+        buffer.clear();
+        return buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Returns a buffer to the pool; it is dropped if the pool is full. The caller must not use it afterwards.
+     */
+    private static void releaseBuffer(ByteBuffer buffer) {
+        BUFFER_POOL.offer(buffer);
+    }
+
+    private static int progressRows(int cols) {
+        return Math.max(1, PROGRESS_INTERVAL / Math.max(1, cols));
+    }
+
+    private static void checkSize(long rows, long cols) throws IOException {
+        if (rows <= 0 || cols <= 0 || rows > Integer.MAX_VALUE || cols > Integer.MAX_VALUE) {
+            throw new IOException("Unsupported matrix size: " + rows + " x " + cols);
+        }
+    }
+
+    private static void checkRange(long rowStart, long rowEnd, long rows) {
+        if (rowStart < 0 || rowEnd > rows || rowStart >= rowEnd) {
+            throw new IllegalArgumentException("Invalid row range: [" + rowStart + ", " + rowEnd + ") of " + rows + " rows.");
+        }
+    }
+
+    private static void drain(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static void ensureRoom(ByteBuffer buffer, WritableByteChannel channel, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            drain(buffer, channel);
+        }
+    }
+
+    private static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of matrix data.");
+            }
+        }
+    }
+
+    /**
+     * Compacts the unread bytes to the front and reads until at least {@code minimum} bytes are available.
+     */
+    private static void refill(ReadableByteChannel channel, ByteBuffer buffer, int minimum) throws IOException {
+        buffer.compact();
+        while (buffer.position() < minimum) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of matrix data.");
+            }
+        }
+        buffer.flip();
+    }
+
+    private static void skip(ReadableByteChannel channel, ByteBuffer buffer, long bytes) throws IOException {
+        while (bytes > 0) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), bytes));
+            int n = channel.read(buffer);
+            if (n < 0) {
+                throw new IOException("Unexpected end of matrix data.");
+            }
+            bytes -= n;
+        }
+    }
+
+    private static void putAscii(ByteBuffer buffer, WritableByteChannel channel, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        ensureRoom(buffer, channel, bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static void putLong(ByteBuffer buffer, long value) {
+        if (value == 0) {
+            buffer.put((byte) '0');
+            return;
+        }
+        int start = buffer.position();
+        while (value > 0) {
+            buffer.put((byte) ('0' + value % 10));
+            value /= 10;
+        }
+        // Digits were written least significant first.
+        for (int lo = start, hi = buffer.position() - 1; lo < hi; lo++, hi--) {
+            byte tmp = buffer.get(lo);
+            buffer.put(lo, buffer.get(hi));
+            buffer.put(hi, tmp);
+        }
+    }
+
+    private static void putDouble(ByteBuffer buffer, StringBuilder digits, double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            if (value < 0 || (value == 0 && 1 / value < 0)) {
+                buffer.put((byte) '-');
+            }
+            putLong(buffer, (long) Math.abs(value));
+            return;
+        }
+        // Same shortest round-tripping digits as Double.toString, appended without creating a String.
+        digits.setLength(0);
+        digits.append(value);
+        for (int i = 0; i < digits.length(); i++) {
+            buffer.put((byte) digits.charAt(i));
+        }
+    }
+
+    /**
+     * Converts a parsed decimal {@code mantissa * 10^exponent}, exactly when both fit the fast path.
+     *
+     * @return the value, or NaN if the fast path does not apply
+     */
+    static double fastPathValue(long mantissa, int exponent) {
+        if (mantissa > (1L << 53)) {
+            return Double.NaN;
+        }
+        if (exponent == 0) {
+            return mantissa;
+        }
+        if (exponent > 0 && exponent <= 22) {
+            return mantissa * POWERS_OF_TEN[exponent];
+        }
+        if (exponent < 0 && exponent >= -22) {
+            return mantissa / POWERS_OF_TEN[-exponent];
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Writes a matrix in the binary format row by row in any order, for results assembled from several
+     * sources without holding the whole matrix. The file is created at its full size, so rows that are
+     * never written read back as zeros. Rows written at consecutive indices are batched into one write.
+     */
+    public static final class BinaryRowWriter implements Closeable {
+        private final FileChannel channel;
+        private final long rows;
+        private final int cols;
+        private final ByteBuffer buffer;
+        private long pendingStart;
+        private int pendingRows;
+        private boolean closed;
+
+        /**
+         * Creates or overwrites a binary matrix file of the given size.
+         *
+         * @param path the file to create or overwrite
+         * @param rows the number of rows
+         * @param cols the number of columns
+         * @throws IOException if the file cannot be created or the size is unsupported
+         */
+        public BinaryRowWriter(Path path, long rows, long cols) throws IOException {
+            checkSize(rows, cols);
+            if (cols * Double.BYTES > BUFFER_SIZE) {
+                throw new IOException("Unsupported matrix size: " + rows + " x " + cols);
+            }
+            this.rows = rows;
+            this.cols = (int) cols;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            // Returned to the pool by close(); if the header write fails the buffer is simply not reused.
+            this.buffer = borrowBuffer();
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(rows).putLong(cols);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, buffer.position());
+            }
+            // Writing the last byte sets the file size; the untouched rows in between read as zeros.
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.write(last, HEADER_BYTES + rows * cols * Double.BYTES - 1);
+            buffer.clear();
+        }
+
+        /**
+         * Writes one row.
+         *
+         * @param row    the row index
+         * @param values the source array
+         * @param offset the index of the row's first value in {@code values}
+         * @throws IOException if writing fails
+         * @throws IndexOutOfBoundsException if the row index is out of range
+         * @throws IllegalStateException if the writer has been closed
+         */
+        public void writeRow(long row, double[] values, int offset) throws IOException {
+            if (closed) {
+                throw new IllegalStateException("Writer has been closed.");
+            }
+            if (row < 0 || row >= rows) {
+                throw new IndexOutOfBoundsException("Invalid row: " + row);
+            }
+            if (pendingRows > 0 && (row != pendingStart + pendingRows || buffer.remaining() < cols * Double.BYTES)) {
+                flush();
+            }
+            if (pendingRows == 0) {
+                pendingStart = row;
+            }
+            buffer.asDoubleBuffer().put(values, offset, cols);
+            buffer.position(buffer.position() + cols * Double.BYTES);
+            pendingRows++;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            long position = HEADER_BYTES + pendingStart * cols * Double.BYTES;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+            pendingRows = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (pendingRows > 0) {
+                    flush();
+                }
+            } finally {
+                releaseBuffer(buffer);
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Byte-level tokenizer over a channel. Tokens are parsed in place from the read buffer.
+     */
+    private static final class TextReader {
+        private final ReadableByteChannel channel;
+        private final ByteBuffer buffer;
+        private final byte[] token = new byte[64];
+        private boolean eof;
+
+        TextReader(ReadableByteChannel channel, ByteBuffer buffer) {
+            this.channel = channel;
+            this.buffer = buffer;
+            buffer.flip();
+        }
+
+        private int peek() throws IOException {
+            // A non-blocking channel may return no bytes; keep reading until it does or ends.
+            while (!buffer.hasRemaining()) {
+                if (eof) {
+                    return -1;
+                }
+                buffer.clear();
+                int n = channel.read(buffer);
+                buffer.flip();
+                if (n < 0) {
+                    eof = true;
+                    return -1;
+                }
+            }
+            return buffer.get(buffer.position()) & 0xFF;
+        }
+
+        private int next() throws IOException {
+            int c = peek();
+            if (c >= 0) {
+                buffer.position(buffer.position() + 1);
+            }
+            return c;
+        }
+
+        String readLine() throws IOException {
+            StringBuilder sb = new StringBuilder();
+            int c;
+            while ((c = next()) >= 0 && c != '\n') {
+                sb.append((char) c);
+            }
+            return sb.toString();
+        }
+
+        void skipComments() throws IOException {
+            while (true) {
+                skipWhitespace();
+                if (peek() != '%') {
+                    return;
+                }
+                while (true) {
+                    int c = next();
+                    if (c < 0 || c == '\n') {
+                        break;
+                    }
+                }
+            }
+        }
+
+        private void skipWhitespace() throws IOException {
+            int c;
+            while ((c = peek()) == ' ' || c == '\t' || c == '\r' || c == '\n') {
+                next();
+            }
+        }
+
+        long parseLong() throws IOException {
+            skipWhitespace();
+            int c = peek();
+            if (c < '0' || c > '9') {
+                throw new IOException(c < 0 ? "Unexpected end of matrix data." : "Expected an integer.");
+            }
+            long value = 0;
+            while ((c = peek()) >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                next();
+            }
+            return value;
+        }
+
+        double parseDouble() throws IOException {
+            skipWhitespace();
+            int length = 0;
+            int c;
+            while ((c = peek()) > ' ') {
+                if (length == token.length) {
+                    throw new IOException("Number too long.");
+                }
+                token[length++] = (byte) c;
+                next();
+            }
+            if (length == 0) {
+                throw new IOException("Unexpected end of matrix data.");
+            }
+
+            int i = 0;
+            boolean negative = false;
+            if (token[0] == '-' || token[0] == '+') {
+                negative = token[0] == '-';
+                i++;
+            }
+            long mantissa = 0;
+            int exponent = 0;
+            int digits = 0;
+            boolean dot = false;
+            boolean valid = true;
+            boolean mantissaDigit = false;
+            for (; i < length; i++) {
+                byte b = token[i];
+                if (b >= '0' && b <= '9') {
+                    mantissaDigit = true;
+                    if (digits < 18) {
+                        mantissa = mantissa * 10 + (b - '0');
+                        if (mantissa != 0) digits++;
+                        if (dot) exponent--;
+                    } else {
+                        valid = false; // Too many significant digits for the exact fast path.
+                        if (!dot) exponent++;
+                    }
+                } else if (b == '.' && !dot) {
+                    dot = true;
+                } else if (b == 'e' || b == 'E') {
+                    i++;
+                    boolean negativeExponent = false;
+                    if (i < length && (token[i] == '-' || token[i] == '+')) {
+                        negativeExponent = token[i] == '-';
+                        i++;
+                    }
+                    if (i == length || length - i > 4) {
+                        valid = false;
+                        break;
+                    }
+                    int e = 0;
+                    for (; i < length; i++) {
+                        if (token[i] < '0' || token[i] > '9') {
+                            valid = false;
+                            break;
+                        }
+                        e = e * 10 + (token[i] - '0');
+                    }
+                    exponent += negativeExponent ? -e : e;
+                    break;
+                } else {
+                    valid = false;
+                    break;
+                }
+            }
+            // Tokens without a mantissa digit, such as ".", "-." or "e5", are left to Double.parseDouble to reject.
+            if (valid && mantissaDigit) {
+                double value = fastPathValue(mantissa, exponent);
+                if (!Double.isNaN(value)) {
+                    return negative ? -value : value;
+                }
+            }
+            try {
+                return Double.parseDouble(new String(token, 0, length, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid number: " + new String(token, 0, length, StandardCharsets.US_ASCII), e);
+            }
+        }
+    }
+}
@@ -1,4 +1,4 @@
-apackage com.advn.physics;
+package com.advn.physics;
 
 public class PhysicsMass {
     private double mass; // Mass in grams
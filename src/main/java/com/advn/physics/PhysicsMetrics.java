@@ -0,0 +1,259 @@
+package com.advn.physics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Low-overhead instrumentation for simulation steps: per-phase timers, body/pair/solver counters
+ * and per-thread allocation counters. Metrics are disabled by default; while disabled every hook
+ * is a single volatile read and returns immediately.
+ *
+ * <p>Typical use inside a timed section:
+ * <pre>
+ * long start = PhysicsMetrics.start();
+ * ... work ...
+ * PhysicsMetrics.stop(PhysicsPhase.COLLISION, start);
+ * </pre>
+ */
+public final class PhysicsMetrics {
+    /** Token returned by {@link #start()} and {@link #allocatedBytes()} while metrics are disabled. */
+    public static final long DISABLED = Long.MIN_VALUE;
+
+    private static final PhysicsPhase[] PHASES = PhysicsPhase.values();
+    private static final LongAdder[] PHASE_NANOS = newAdders(PHASES.length);
+    private static final LongAdder[] PHASE_COUNTS = newAdders(PHASES.length);
+    private static final LongAdder STEPS = new LongAdder();
+    private static final LongAdder BODIES = new LongAdder();
+    private static final LongAdder PAIRS = new LongAdder();
+    private static final LongAdder SOLVER_ITERATIONS = new LongAdder();
+    private static final LongAdder ALLOCATED_BYTES = new LongAdder();
+    private static final com.sun.management.ThreadMXBean THREADS = allocationBean();
+
+    private static volatile boolean enabled;
+    private static volatile PhysicsMetricsSink sink;
+
+    private PhysicsMetrics() {
+    }
+
+    /**
+     * Enables metric collection without a sink; values are only kept in the counters.
+     */
+    public static void enable() {
+        enable(null);
+    }
+
+    /**
+     * Enables metric collection and forwards every measurement to the given sink.
+     *
+     * @param metricsSink the sink to forward to, or null for counters only
+     */
+    public static void enable(PhysicsMetricsSink metricsSink) {
+        sink = metricsSink;
+        enabled = true;
+    }
+
+    /**
+     * Disables metric collection. Counters keep their values until {@link #reset()}.
+     */
+    public static void disable() {
+        enabled = false;
+        sink = null;
+    }
+
+    /**
+     * Checks whether metrics are currently collected.
+     *
+     * @return true if enabled
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts timing a section.
+     *
+     * @return the start timestamp, or {@link #DISABLED} if metrics are off
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : DISABLED;
+    }
+
+    /**
+     * Stops timing a section started with {@link #start()} and records it against a phase.
+     *
+     * @param phase      the phase to charge
+     * @param startNanos the value returned by {@link #start()}
+     */
+    public static void stop(PhysicsPhase phase, long startNanos) {
+        if (startNanos == DISABLED || !enabled) {
+            return;
+        }
+        long nanos = System.nanoTime() - startNanos;
+        PHASE_NANOS[phase.ordinal()].add(nanos);
+        PHASE_COUNTS[phase.ordinal()].increment();
+        PhysicsMetricsSink current = sink;
+        if (current != null) {
+            current.onPhase(phase, nanos);
+        }
+    }
+
+    /**
+     * Returns the number of bytes allocated so far by the calling thread.
+     *
+     * @return the allocated bytes, {@link #DISABLED} if metrics are off, or -1 if the JVM cannot report it
+     */
+    public static long allocatedBytes() {
+        if (!enabled) {
+            return DISABLED;
+        }
+        return currentThreadAllocatedBytes();
+    }
+
+    /**
+     * Records a completed simulation step.
+     *
+     * @param startNanos       the value returned by {@link #start()} at the beginning of the step
+     * @param startAllocated   the value returned by {@link #allocatedBytes()} at the beginning of the step
+     * @param bodies           the number of bodies processed
+     * @param pairs            the number of candidate pairs tested
+     * @param solverIterations the number of solver iterations run
+     */
+    public static void recordStep(long startNanos, long startAllocated, long bodies, long pairs, long solverIterations) {
+        if (startNanos == DISABLED || !enabled) {
+            return;
+        }
+        long nanos = System.nanoTime() - startNanos;
+        long allocated = -1;
+        if (startAllocated >= 0) {
+            long now = currentThreadAllocatedBytes();
+            if (now >= 0) {
+                allocated = now - startAllocated;
+                ALLOCATED_BYTES.add(allocated);
+            }
+        }
+        STEPS.increment();
+        BODIES.add(bodies);
+        PAIRS.add(pairs);
+        SOLVER_ITERATIONS.add(solverIterations);
+        PhysicsMetricsSink current = sink;
+        if (current != null) {
+            current.onStep(nanos, bodies, pairs, solverIterations, allocated);
+        }
+    }
+
+    /**
+     * Gets the total time recorded for a phase.
+     *
+     * @param phase the phase
+     * @return the accumulated nanoseconds
+     */
+    public static long getPhaseNanos(PhysicsPhase phase) {
+        return PHASE_NANOS[phase.ordinal()].sum();
+    }
+
+    /**
+     * Gets the number of timed sections recorded for a phase.
+     *
+     * @param phase the phase
+     * @return the number of sections
+     */
+    public static long getPhaseCount(PhysicsPhase phase) {
+        return PHASE_COUNTS[phase.ordinal()].sum();
+    }
+
+    /**
+     * Gets the number of recorded steps.
+     *
+     * @return the step count
+     */
+    public static long getSteps() {
+        return STEPS.sum();
+    }
+
+    /**
+     * Gets the total number of bodies processed over all recorded steps.
+     *
+     * @return the body count
+     */
+    public static long getBodies() {
+        return BODIES.sum();
+    }
+
+    /**
+     * Gets the total number of candidate pairs tested over all recorded steps.
+     *
+     * @return the pair count
+     */
+    public static long getPairs() {
+        return PAIRS.sum();
+    }
+
+    /**
+     * Gets the total number of solver iterations over all recorded steps.
+     *
+     * @return the iteration count
+     */
+    public static long getSolverIterations() {
+        return SOLVER_ITERATIONS.sum();
+    }
+
+    /**
+     * Gets the total bytes allocated by stepping threads over all recorded steps.
+     *
+     * @return the allocated bytes
+     */
+    public static long getAllocatedBytes() {
+        return ALLOCATED_BYTES.sum();
+    }
+
+    /**
+     * Clears all counters and timers.
+     */
+    public static void reset() {
+        for (int i = 0; i < PHASES.length; i++) {
+            PHASE_NANOS[i].reset();
+            PHASE_COUNTS[i].reset();
+        }
+        STEPS.reset();
+        BODIES.reset();
+        PAIRS.reset();
+        SOLVER_ITERATIONS.reset();
+        ALLOCATED_BYTES.reset();
+    }
+
+    /**
+     * Returns the bytes allocated so far by the calling thread, independent of whether metrics are enabled.
+     *
+     * @return the allocated bytes, or -1 if the JVM cannot report it
+     */
+    static long currentThreadAllocatedBytes() {
+        if (THREADS == null) {
+            return -1;
+        }
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static LongAdder[] newAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        try {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) bean;
+                if (allocationBean.isThreadAllocatedMemorySupported()) {
+                    allocationBean.setThreadAllocatedMemoryEnabled(true);
+                    return allocationBean;
+                }
+            }
+        } catch (LinkageError | UnsupportedOperationException e) {
+            // Fall through: allocation counters are optional.
+        }
+        return null;
+    }
+}
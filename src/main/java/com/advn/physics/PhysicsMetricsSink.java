@@ -0,0 +1,26 @@
+package com.advn.physics;
+
+/**
+ * Receives measurements from {@link PhysicsMetrics} while metrics are enabled.
+ * Implementations are called on the thread doing the work and must be cheap and thread-safe.
+ */
+public interface PhysicsMetricsSink {
+    /**
+     * Called when a timed phase finishes.
+     *
+     * @param phase the phase that finished
+     * @param nanos the elapsed time in nanoseconds
+     */
+    void onPhase(PhysicsPhase phase, long nanos);
+
+    /**
+     * Called when a full simulation step finishes.
+     *
+     * @param nanos            the elapsed time of the step in nanoseconds
+     * @param bodies           the number of bodies processed
+     * @param pairs            the number of candidate pairs tested
+     * @param solverIterations the number of solver iterations run
+     * @param allocatedBytes   the bytes allocated by the stepping thread, or -1 if unknown
+     */
+    void onStep(long nanos, long bodies, long pairs, long solverIterations, long allocatedBytes);
+}
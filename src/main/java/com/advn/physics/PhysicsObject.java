@@ -5,4 +5,8 @@ public class PhysicsObject {
     public PhysicsObject(PhysicsMass Mass) {
         this.Mass = Mass;
     }
+
+    public PhysicsMass getMass() {
+        return Mass;
+    }
 }
@@ -0,0 +1,19 @@
+package com.advn.physics;
+
+/**
+ * Phases of a simulation step that {@link PhysicsMetrics} can time separately.
+ */
+public enum PhysicsPhase {
+    /** Advancing positions and velocities. */
+    INTEGRATION,
+    /** Finding candidate body pairs. */
+    BROADPHASE,
+    /** Exact contact tests on candidate pairs. */
+    COLLISION,
+    /** Resolving contacts and constraints. */
+    SOLVER,
+    /** Dense matrix kernels such as {@link Matrix#multiply(Matrix)}. */
+    MATRIX,
+    /** Bulk vector kernels. */
+    VECTOR
+}
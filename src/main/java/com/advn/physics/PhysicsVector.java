@@ -54,7 +54,8 @@ public class PhysicsVector {
         double dotProduct = dotProduct(other);
         double magnitudes = this.magnitude() * other.magnitude();
         if (magnitudes == 0) return 0; // Avoid division by zero
-        return Math.acos(Math.min(1, Math.max(-1, dotProduct / magnitudes))); // Clamp value to avoid NaN
+        double cosine = Math.min(1, Math.max(-1, dotProduct / magnitudes)); // Clamp value to avoid NaN
+        return FastTrig.isEnabled() ? FastTrig.acos(cosine) : Math.acos(cosine);
     }
 
     public PhysicsVector projectOnto(PhysicsVector other) {
@@ -83,7 +84,8 @@ public class PhysicsVector {
     }
 
     public double[] toPolar() {
-        return new double[]{magnitude(), Math.atan2(pY, pX)};
+        double angle = FastTrig.isEnabled() ? FastTrig.atan2(pY, pX) : Math.atan2(pY, pX);
+        return new double[]{magnitude(), angle};
     }
 
     public static PhysicsVector fromPolar(double magnitude, double angle) {
@@ -139,7 +141,7 @@ public class PhysicsVector {
 
     public static PhysicsVector slerp(PhysicsVector start, PhysicsVector end, double t) {
         double dot = start.dotProduct(end);
-        double theta = Math.acos(dot);
+        double theta = FastTrig.isEnabled() ? FastTrig.acos(dot) : Math.acos(dot);
         double sinTheta = Math.sin(theta);
         if (sinTheta < 1e-6) {
             return interpolate(start, end, t);
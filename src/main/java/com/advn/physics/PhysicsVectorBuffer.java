@@ -0,0 +1,273 @@
+package com.advn.physics;
+
+/**
+ * Flat structure-of-arrays storage for many 2D vectors with bulk kernels.
+ * The buffer stores its coordinates either as {@code double} or as {@code float} depending on its
+ * {@link Precision}; each bulk kernel switches on the precision once and then runs a primitive loop.
+ * Single-precision buffers still accept and return {@code double} values, rounding on store.
+ */
+public class PhysicsVectorBuffer {
+    private final Precision precision;
+    private final int size;
+    private final double[] xs;
+    private final double[] ys;
+    private final float[] fxs;
+    private final float[] fys;
+
+    /**
+     * Creates a zero-filled buffer.
+     *
+     * @param size      the number of vectors
+     * @param precision the storage precision
+     */
+    public PhysicsVectorBuffer(int size, Precision precision) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size cannot be negative.");
+        }
+        this.precision = precision;
+        this.size = size;
+        if (precision == Precision.SINGLE) {
+            this.xs = null;
+            this.ys = null;
+            this.fxs = new float[size];
+            this.fys = new float[size];
+        } else {
+            this.xs = new double[size];
+            this.ys = new double[size];
+            this.fxs = null;
+            this.fys = null;
+        }
+    }
+
+    /**
+     * Copies an array of vectors into a new buffer.
+     *
+     * @param vectors   the vectors to copy
+     * @param precision the storage precision
+     * @return the filled buffer
+     */
+    public static PhysicsVectorBuffer fromVectors(PhysicsVector[] vectors, Precision precision) {
+        PhysicsVectorBuffer buffer = new PhysicsVectorBuffer(vectors.length, precision);
+        for (int i = 0; i < vectors.length; i++) {
+            buffer.set(i, vectors[i].getX(), vectors[i].getY());
+        }
+        return buffer;
+    }
+
+    /**
+     * Copies the buffer into new {@link PhysicsVector} instances.
+     *
+     * @return the vectors
+     */
+    public PhysicsVector[] toVectors() {
+        PhysicsVector[] vectors = new PhysicsVector[size];
+        for (int i = 0; i < size; i++) {
+            vectors[i] = new PhysicsVector(getX(i), getY(i));
+        }
+        return vectors;
+    }
+
+    /**
+     * Copies this buffer into a new buffer with the given precision.
+     *
+     * @param target the precision of the copy
+     * @return the converted buffer
+     */
+    public PhysicsVectorBuffer withPrecision(Precision target) {
+        PhysicsVectorBuffer result = new PhysicsVectorBuffer(size, target);
+        if (precision == Precision.SINGLE && target == Precision.SINGLE) {
+            System.arraycopy(fxs, 0, result.fxs, 0, size);
+            System.arraycopy(fys, 0, result.fys, 0, size);
+        } else if (precision == Precision.DOUBLE && target == Precision.DOUBLE) {
+            System.arraycopy(xs, 0, result.xs, 0, size);
+            System.arraycopy(ys, 0, result.ys, 0, size);
+        } else if (target == Precision.SINGLE) {
+            for (int i = 0; i < size; i++) {
+                result.fxs[i] = (float) xs[i];
+                result.fys[i] = (float) ys[i];
+            }
+        } else {
+            for (int i = 0; i < size; i++) {
+                result.xs[i] = fxs[i];
+                result.ys[i] = fys[i];
+            }
+        }
+        return result;
+    }
+
+    public Precision getPrecision() {
+        return precision;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getX(int index) {
+        return precision == Precision.SINGLE ? fxs[index] : xs[index];
+    }
+
+    public double getY(int index) {
+        return precision == Precision.SINGLE ? fys[index] : ys[index];
+    }
+
+    public PhysicsVector get(int index) {
+        return new PhysicsVector(getX(index), getY(index));
+    }
+
+    public void set(int index, double x, double y) {
+        if (precision == Precision.SINGLE) {
+            fxs[index] = (float) x;
+            fys[index] = (float) y;
+        } else {
+            xs[index] = x;
+            ys[index] = y;
+        }
+    }
+
+    public void set(int index, PhysicsVector vector) {
+        set(index, vector.getX(), vector.getY());
+    }
+
+    /**
+     * Adds another buffer element-wise into this one.
+     *
+     * @param other the buffer to add
+     * @throws IllegalArgumentException if sizes or precisions differ
+     */
+    public void add(PhysicsVectorBuffer other) {
+        addScaled(other, 1.0);
+    }
+
+    /**
+     * Adds {@code factor * other} element-wise into this one, e.g. {@code position += velocity * dt}.
+     *
+     * @param other  the buffer to add
+     * @param factor the scale applied to {@code other}
+     * @throws IllegalArgumentException if sizes or precisions differ
+     */
+    public void addScaled(PhysicsVectorBuffer other, double factor) {
+        checkCompatible(other);
+        long start = PhysicsMetrics.start();
+        if (precision == Precision.SINGLE) {
+            float f = (float) factor;
+            float[] ox = other.fxs;
+            float[] oy = other.fys;
+            for (int i = 0; i < size; i++) {
+                fxs[i] += f * ox[i];
+                fys[i] += f * oy[i];
+            }
+        } else {
+            double[] ox = other.xs;
+            double[] oy = other.ys;
+            for (int i = 0; i < size; i++) {
+                xs[i] += factor * ox[i];
+                ys[i] += factor * oy[i];
+            }
+        }
+        PhysicsMetrics.stop(PhysicsPhase.VECTOR, start);
+    }
+
+    /**
+     * Scales every vector in place.
+     *
+     * @param factor the scale factor
+     */
+    public void scale(double factor) {
+        long start = PhysicsMetrics.start();
+        if (precision == Precision.SINGLE) {
+            float f = (float) factor;
+            for (int i = 0; i < size; i++) {
+                fxs[i] *= f;
+                fys[i] *= f;
+            }
+        } else {
+            for (int i = 0; i < size; i++) {
+                xs[i] *= factor;
+                ys[i] *= factor;
+            }
+        }
+        PhysicsMetrics.stop(PhysicsPhase.VECTOR, start);
+    }
+
+    /**
+     * Computes the element-wise dot products with another buffer.
+     *
+     * @param other the other buffer
+     * @param out   receives {@code size()} dot products
+     * @throws IllegalArgumentException if sizes or precisions differ
+     */
+    public void dotProducts(PhysicsVectorBuffer other, double[] out) {
+        checkCompatible(other);
+        long start = PhysicsMetrics.start();
+        if (precision == Precision.SINGLE) {
+            float[] ox = other.fxs;
+            float[] oy = other.fys;
+            for (int i = 0; i < size; i++) {
+                out[i] = fxs[i] * ox[i] + fys[i] * oy[i];
+            }
+        } else {
+            double[] ox = other.xs;
+            double[] oy = other.ys;
+            for (int i = 0; i < size; i++) {
+                out[i] = xs[i] * ox[i] + ys[i] * oy[i];
+            }
+        }
+        PhysicsMetrics.stop(PhysicsPhase.VECTOR, start);
+    }
+
+    /**
+     * Computes the magnitude of every vector.
+     *
+     * @param out receives {@code size()} magnitudes
+     */
+    public void magnitudes(double[] out) {
+        long start = PhysicsMetrics.start();
+        if (precision == Precision.SINGLE) {
+            for (int i = 0; i < size; i++) {
+                out[i] = Math.sqrt(fxs[i] * fxs[i] + fys[i] * fys[i]);
+            }
+        } else {
+            for (int i = 0; i < size; i++) {
+                out[i] = Math.sqrt(xs[i] * xs[i] + ys[i] * ys[i]);
+            }
+        }
+        PhysicsMetrics.stop(PhysicsPhase.VECTOR, start);
+    }
+
+    /**
+     * Computes the centroid of all vectors. Sums are accumulated in double for both precisions.
+     *
+     * @return the centroid
+     */
+    public PhysicsVector centroid() {
+        double sumX = 0;
+        double sumY = 0;
+        if (precision == Precision.SINGLE) {
+            for (int i = 0; i < size; i++) {
+                sumX += fxs[i];
+                sumY += fys[i];
+            }
+        } else {
+            for (int i = 0; i < size; i++) {
+                sumX += xs[i];
+                sumY += ys[i];
+            }
+        }
+        return new PhysicsVector(sumX / size, sumY / size);
+    }
+
+    private void checkCompatible(PhysicsVectorBuffer other) {
+        if (other.size != size) {
+            throw new IllegalArgumentException("Buffer sizes do not match.");
+        }
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Buffer precisions do not match.");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PhysicsVectorBuffer(size: %d, precision: %s)", size, precision);
+    }
+}
@@ -0,0 +1,1043 @@
+package com.advn.physics;
+
+import java.util.Arrays;
+
+/**
+ * A 2D world of circular bodies stored as flat arrays.
+ *
+ * <p>Each {@link #step(double)} integrates velocities, finds candidate pairs with a sweep along x,
+ * tests them exactly, resolves contacts and distance joints, and integrates positions. Bodies that
+ * touch or are jointed form islands (connected components found with union-find). An island whose
+ * bodies all stay below the sleep velocity for the sleep time is put to sleep: it is skipped by
+ * integration and the sweep, and only wakes when an awake body touches it or a force, velocity or
+ * position is applied to one of its bodies. The per-step cost therefore follows the number of awake
+ * bodies rather than the total: joints are solved from a list of joints with an awake body, and
+ * static and sleeping bodies are indexed in sorted runs that absorb newly sleeping bodies by merging
+ * rather than by re-sorting everything.
+ *
+ * <p>Contacts are solved Jacobi-style: every iteration computes all impulses from the velocities of
+ * the previous iteration, so the result does not depend on the order in which pairs were found.
+ *
+ * <p>Bodies with zero mass are static. Mass and length units are whatever the caller uses consistently.
+ */
+public class PhysicsWorld {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final int REST_RUN = 64;
+    private static final int REST_GROWTH_BITS = 3;
+
+    // Body state, indexed by body id.
+    private int count;
+    private double[] x = new double[INITIAL_CAPACITY];
+    private double[] y = new double[INITIAL_CAPACITY];
+    private double[] vx = new double[INITIAL_CAPACITY];
+    private double[] vy = new double[INITIAL_CAPACITY];
+    private double[] radius = new double[INITIAL_CAPACITY];
+    private double[] invMass = new double[INITIAL_CAPACITY];
+    private double[] fx = new double[INITIAL_CAPACITY];
+    private double[] fy = new double[INITIAL_CAPACITY];
+    private double[] sleepTime = new double[INITIAL_CAPACITY];
+    private boolean[] awake = new boolean[INITIAL_CAPACITY];
+    // Ring of bodies that fell asleep together; waking one wakes the ring.
+    private int[] sleepNext = new int[INITIAL_CAPACITY];
+
+    // Dense list of awake dynamic bodies, kept sorted by min x between steps.
+    private int[] active = new int[INITIAL_CAPACITY];
+    private int activeCount;
+    private boolean activeDirty;
+
+    // Static and sleeping bodies sorted by min x, as one sorted run per level; each level holds up to eight
+    // times as many entries as the one below. Bodies that come to rest are queued and merged in as a new run
+    // at the next step. An entry is valid while its body is not awake and its stamp matches restStamp; stale
+    // entries are skipped and dropped by the next merge of their level.
+    private int[][] restIds = new int[0][];
+    private double[][] restKeys = new double[0][];
+    private int[][] restStamps = new int[0][];
+    private int[] restSizes = new int[0];
+    private double restMaxDiameter;
+    private int[] restStamp = new int[INITIAL_CAPACITY];
+    private int[] restQueue = new int[INITIAL_CAPACITY];
+    private int[] restQueueStamp = new int[INITIAL_CAPACITY];
+    private int restQueued;
+    // The run being carried up, and the buffers it is merged into.
+    private int[] runIds = new int[INITIAL_CAPACITY];
+    private double[] runKeys = new double[INITIAL_CAPACITY];
+    private int[] runStamps = new int[INITIAL_CAPACITY];
+    private int runSize;
+    private int[] spareIds = new int[INITIAL_CAPACITY];
+    private double[] spareKeys = new double[INITIAL_CAPACITY];
+    private int[] spareStamps = new int[INITIAL_CAPACITY];
+
+    // Contacts found in the current step.
+    private int contactCount;
+    private int[] contactA = new int[INITIAL_CAPACITY];
+    private int[] contactB = new int[INITIAL_CAPACITY];
+    private double[] contactNx = new double[INITIAL_CAPACITY];
+    private double[] contactNy = new double[INITIAL_CAPACITY];
+    private double[] contactDepth = new double[INITIAL_CAPACITY];
+    private double[] contactTarget = new double[INITIAL_CAPACITY];
+    private double[] contactImpulse = new double[INITIAL_CAPACITY];
+
+    // Distance joints, linked into one list per body starting at jointHead.
+    private int jointCount;
+    private int[] jointA = new int[INITIAL_CAPACITY];
+    private int[] jointB = new int[INITIAL_CAPACITY];
+    private double[] jointLength = new double[INITIAL_CAPACITY];
+    private int[] jointNextA = new int[INITIAL_CAPACITY];
+    private int[] jointNextB = new int[INITIAL_CAPACITY];
+    private int[] jointHead = new int[INITIAL_CAPACITY];
+
+    // Dense list of joints with at least one awake body.
+    private int[] activeJoints = new int[INITIAL_CAPACITY];
+    private boolean[] jointActive = new boolean[INITIAL_CAPACITY];
+    private int activeJointCount;
+
+    // Scratch space reused every step.
+    private double[] minX = new double[INITIAL_CAPACITY];
+    private double[] dvx = new double[INITIAL_CAPACITY];
+    private double[] dvy = new double[INITIAL_CAPACITY];
+    private int[] degree = new int[INITIAL_CAPACITY];
+    private int[] parent = new int[INITIAL_CAPACITY];
+    private double[] islandSleepTime = new double[INITIAL_CAPACITY];
+
+    private double gravityX;
+    private double gravityY;
+    private double restitution = 0.0;
+    private int solverIterations = 8;
+    private double baumgarte = 0.2;
+    private double slop = 0.005;
+    private boolean sleepingEnabled = true;
+    private double sleepVelocity = 0.05;
+    private double timeToSleep = 0.5;
+
+    /**
+     * Adds a body to the world.
+     *
+     * @param x      the x position
+     * @param y      the y position
+     * @param radius the body radius
+     * @param mass   the body mass, or 0 for a static body
+     * @return the id of the new body
+     * @throws IllegalArgumentException if radius or mass is negative
+     */
+    public int addBody(double x, double y, double radius, double mass) {
+        if (radius < 0 || mass < 0) {
+            throw new IllegalArgumentException("Radius and mass cannot be negative.");
+        }
+        ensureBodyCapacity(count + 1);
+        int id = count++;
+        this.x[id] = x;
+        this.y[id] = y;
+        this.vx[id] = 0;
+        this.vy[id] = 0;
+        this.radius[id] = radius;
+        this.invMass[id] = mass == 0 ? 0 : 1 / mass;
+        this.sleepNext[id] = id;
+        this.jointHead[id] = -1;
+        if (mass == 0) {
+            awake[id] = false;
+            queueRest(id);
+        } else {
+            activate(id);
+        }
+        return id;
+    }
+
+    /**
+     * Adds a {@link PhysicsObject} to the world using its mass.
+     *
+     * @param object   the object to add
+     * @param position the initial position
+     * @param radius   the body radius
+     * @return the id of the new body
+     */
+    public int addObject(PhysicsObject object, PhysicsVector position, double radius) {
+        return addBody(position.getX(), position.getY(), radius, object.getMass().getMass());
+    }
+
+    /**
+     * Connects two bodies with a rigid distance joint at their current separation.
+     * Jointed bodies always share an island.
+     *
+     * @param a the first body id
+     * @param b the second body id
+     * @throws IndexOutOfBoundsException if either id is invalid
+     * @throws IllegalArgumentException if both ids are the same body
+     */
+    public void addJoint(int a, int b) {
+        checkBody(a);
+        checkBody(b);
+        if (a == b) {
+            throw new IllegalArgumentException("A body cannot be jointed to itself.");
+        }
+        if (jointCount == jointA.length) {
+            int capacity = jointCount * 2;
+            jointA = Arrays.copyOf(jointA, capacity);
+            jointB = Arrays.copyOf(jointB, capacity);
+            jointLength = Arrays.copyOf(jointLength, capacity);
+            jointNextA = Arrays.copyOf(jointNextA, capacity);
+            jointNextB = Arrays.copyOf(jointNextB, capacity);
+            jointActive = Arrays.copyOf(jointActive, capacity);
+        }
+        int j = jointCount++;
+        jointA[j] = a;
+        jointB[j] = b;
+        jointLength[j] = Math.hypot(x[b] - x[a], y[b] - y[a]);
+        jointNextA[j] = jointHead[a];
+        jointHead[a] = j;
+        jointNextB[j] = jointHead[b];
+        jointHead[b] = j;
+        jointActive[j] = false;
+        wake(a);
+        wake(b);
+        if (!jointActive[j] && (awake[a] || awake[b])) {
+            activateJoint(j);
+        }
+    }
+
+    /**
+     * Removes every body and joint but keeps the allocated storage, so a world can be refilled
+     * every step without allocating. Gravity and solver settings are kept.
+     */
+    public void clear() {
+        Arrays.fill(fx, 0, count, 0);
+        Arrays.fill(fy, 0, count, 0);
+        count = 0;
+        activeCount = 0;
+        activeDirty = false;
+        Arrays.fill(restSizes, 0);
+        restMaxDiameter = 0;
+        restQueued = 0;
+        contactCount = 0;
+        jointCount = 0;
+        activeJointCount = 0;
+    }
+
+    /**
+     * Advances the world by one time step.
+     *
+     * @param dt the time step
+     */
+    public void step(double dt) {
+        long stepStart = PhysicsMetrics.start();
+        long allocStart = PhysicsMetrics.allocatedBytes();
+
+        long phase = PhysicsMetrics.start();
+        integrateVelocities(dt);
+        PhysicsMetrics.stop(PhysicsPhase.INTEGRATION, phase);
+
+        phase = PhysicsMetrics.start();
+        contactCount = 0;
+        int pairs = findPairs();
+        PhysicsMetrics.stop(PhysicsPhase.BROADPHASE, phase);
+
+        phase = PhysicsMetrics.start();
+        wakeTouchedBodies();
+        prepareContacts(dt);
+        solve(dt);
+        PhysicsMetrics.stop(PhysicsPhase.SOLVER, phase);
+
+        phase = PhysicsMetrics.start();
+        integratePositions(dt);
+        PhysicsMetrics.stop(PhysicsPhase.INTEGRATION, phase);
+
+        if (sleepingEnabled) {
+            updateSleep(dt);
+        }
+
+        PhysicsMetrics.recordStep(stepStart, allocStart, activeCount, pairs, solverIterations);
+    }
+
+    /**
+     * Applies a force to a body until the end of the next step, waking its island.
+     *
+     * @param body the body id
+     * @param fx   the force x component
+     * @param fy   the force y component
+     */
+    public void applyForce(int body, double fx, double fy) {
+        checkBody(body);
+        if (invMass[body] == 0) {
+            return;
+        }
+        wake(body);
+        this.fx[body] += fx;
+        this.fy[body] += fy;
+    }
+
+    /**
+     * Sets the velocity of a body, waking its island.
+     *
+     * @param body the body id
+     * @param vx   the velocity x component
+     * @param vy   the velocity y component
+     */
+    public void setVelocity(int body, double vx, double vy) {
+        checkBody(body);
+        if (invMass[body] == 0) {
+            return;
+        }
+        wake(body);
+        this.vx[body] = vx;
+        this.vy[body] = vy;
+    }
+
+    /**
+     * Moves a body, waking its island.
+     *
+     * @param body the body id
+     * @param x    the new x position
+     * @param y    the new y position
+     */
+    public void setPosition(int body, double x, double y) {
+        checkBody(body);
+        this.x[body] = x;
+        this.y[body] = y;
+        if (invMass[body] == 0) {
+            queueRest(body);
+        } else {
+            wake(body);
+        }
+    }
+
+    /**
+     * Wakes a sleeping body together with the island it fell asleep with.
+     *
+     * @param body the body id
+     */
+    public void wake(int body) {
+        checkBody(body);
+        if (invMass[body] == 0 || awake[body]) {
+            return;
+        }
+        int current = body;
+        do {
+            int next = sleepNext[current];
+            sleepNext[current] = current;
+            activate(current);
+            current = next;
+        } while (current != body);
+    }
+
+    public PhysicsVector getPosition(int body) {
+        checkBody(body);
+        return new PhysicsVector(x[body], y[body]);
+    }
+
+    public PhysicsVector getVelocity(int body) {
+        checkBody(body);
+        return new PhysicsVector(vx[body], vy[body]);
+    }
+
+    public double getRadius(int body) {
+        checkBody(body);
+        return radius[body];
+    }
+
+    public double getMass(int body) {
+        checkBody(body);
+        return invMass[body] == 0 ? 0 : 1 / invMass[body];
+    }
+
+    public boolean isAwake(int body) {
+        checkBody(body);
+        return awake[body];
+    }
+
+    // Unchecked access for steppers in this package that work on the body arrays directly.
+
+    double x(int body) {
+        return x[body];
+    }
+
+    double y(int body) {
+        return y[body];
+    }
+
+    double vx(int body) {
+        return vx[body];
+    }
+
+    double vy(int body) {
+        return vy[body];
+    }
+
+    double radius(int body) {
+        return radius[body];
+    }
+
+    double invMass(int body) {
+        return invMass[body];
+    }
+
+    /**
+     * Moves a body without waking it. A body at rest is re-queued for the rest index.
+     */
+    void translate(int body, double dx, double dy) {
+        x[body] += dx;
+        y[body] += dy;
+        if (!awake[body]) {
+            queueRest(body);
+        }
+    }
+
+    /**
+     * Changes the velocity of a dynamic body without waking it; callers wake the body themselves.
+     */
+    void addVelocity(int body, double dvx, double dvy) {
+        vx[body] += dvx;
+        vy[body] += dvy;
+    }
+
+    public int getBodyCount() {
+        return count;
+    }
+
+    public int getActiveBodyCount() {
+        return activeCount;
+    }
+
+    public int getContactCount() {
+        return contactCount;
+    }
+
+    public int getJointCount() {
+        return jointCount;
+    }
+
+    public PhysicsVector getGravity() {
+        return new PhysicsVector(gravityX, gravityY);
+    }
+
+    public void setGravity(double gx, double gy) {
+        this.gravityX = gx;
+        this.gravityY = gy;
+    }
+
+    public double getRestitution() {
+        return restitution;
+    }
+
+    public void setRestitution(double restitution) {
+        this.restitution = restitution;
+    }
+
+    public void setSolverIterations(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("Solver needs at least one iteration.");
+        }
+        this.solverIterations = iterations;
+    }
+
+    /**
+     * Enables or disables sleeping. Disabling wakes every body.
+     *
+     * @param enabled whether idle islands may sleep
+     */
+    public void setSleepingEnabled(boolean enabled) {
+        this.sleepingEnabled = enabled;
+        if (!enabled) {
+            for (int i = 0; i < count; i++) {
+                wake(i);
+            }
+        }
+    }
+
+    /**
+     * Sets when islands fall asleep.
+     *
+     * @param velocity the speed below which a body counts as idle
+     * @param seconds  how long every body of an island must stay idle
+     */
+    public void setSleepThreshold(double velocity, double seconds) {
+        this.sleepVelocity = velocity;
+        this.timeToSleep = seconds;
+    }
+
+    private void integrateVelocities(double dt) {
+        for (int k = 0; k < activeCount; k++) {
+            int i = active[k];
+            vx[i] += (gravityX + fx[i] * invMass[i]) * dt;
+            vy[i] += (gravityY + fy[i] * invMass[i]) * dt;
+            fx[i] = 0;
+            fy[i] = 0;
+        }
+    }
+
+    private void integratePositions(double dt) {
+        for (int k = 0; k < activeCount; k++) {
+            int i = active[k];
+            x[i] += vx[i] * dt;
+            y[i] += vy[i] * dt;
+        }
+    }
+
+    /**
+     * Sweeps awake bodies against each other and against the rest index, recording overlapping pairs as contacts.
+     *
+     * @return the number of candidate pairs tested
+     */
+    private int findPairs() {
+        for (int k = 0; k < activeCount; k++) {
+            int i = active[k];
+            minX[i] = x[i] - radius[i];
+        }
+        if (activeDirty) {
+            sortByKey(active, 0, activeCount, minX);
+            activeDirty = false;
+        } else {
+            insertionSortByKey(active, 0, activeCount, minX);
+        }
+        if (restQueued > 0) {
+            flushRest();
+        }
+
+        int pairs = 0;
+        for (int k = 0; k < activeCount; k++) {
+            int a = active[k];
+            double maxX = x[a] + radius[a];
+            for (int m = k + 1; m < activeCount; m++) {
+                int b = active[m];
+                if (minX[b] > maxX) {
+                    break;
+                }
+                pairs++;
+                testPair(a, b);
+            }
+
+            double from = minX[a] - restMaxDiameter;
+            for (int level = 0; level < restSizes.length; level++) {
+                int size = restSizes[level];
+                double[] keys = restKeys[level];
+                int[] ids = restIds[level];
+                int[] stamps = restStamps[level];
+                for (int m = size == 0 ? 0 : lowerBound(keys, size, from); m < size && keys[m] <= maxX; m++) {
+                    int b = ids[m];
+                    if (!isRestEntry(b, stamps[m])) {
+                        continue; // Woken or moved since it was indexed; handled by the active sweep or a newer entry.
+                    }
+                    pairs++;
+                    testPair(a, b);
+                }
+            }
+        }
+        return pairs;
+    }
+
+    private void testPair(int a, int b) {
+        double dx = x[b] - x[a];
+        double dy = y[b] - y[a];
+        double r = radius[a] + radius[b];
+        double distSq = dx * dx + dy * dy;
+        if (distSq >= r * r) {
+            return;
+        }
+        double dist = Math.sqrt(distSq);
+        double nx = 1;
+        double ny = 0;
+        if (dist > 0) {
+            nx = dx / dist;
+            ny = dy / dist;
+        }
+        if (contactCount == contactA.length) {
+            growContacts();
+        }
+        contactA[contactCount] = a;
+        contactB[contactCount] = b;
+        contactNx[contactCount] = nx;
+        contactNy[contactCount] = ny;
+        contactDepth[contactCount] = r - dist;
+        contactCount++;
+    }
+
+    private void wakeTouchedBodies() {
+        for (int c = 0; c < contactCount; c++) {
+            int b = contactB[c];
+            if (!awake[b] && invMass[b] != 0) {
+                wake(b);
+            }
+        }
+        // Waking a body appends its joints, so the loop also reaches islands woken through a joint.
+        for (int k = 0; k < activeJointCount; k++) {
+            int j = activeJoints[k];
+            int a = jointA[j];
+            int b = jointB[j];
+            if (awake[a] != awake[b]) {
+                wake(awake[a] ? b : a);
+            }
+        }
+    }
+
+    private void prepareContacts(double dt) {
+        for (int c = 0; c < contactCount; c++) {
+            int a = contactA[c];
+            int b = contactB[c];
+            double vn = (vx[b] - vx[a]) * contactNx[c] + (vy[b] - vy[a]) * contactNy[c];
+            double bounce = vn < -1e-3 ? -restitution * vn : 0;
+            double bias = baumgarte / dt * Math.max(contactDepth[c] - slop, 0);
+            contactTarget[c] = Math.max(bounce, bias);
+            contactImpulse[c] = 0;
+        }
+    }
+
+    private void solve(double dt) {
+        if (contactCount == 0 && activeJointCount == 0) {
+            return;
+        }
+        // Jacobi relaxation: each impulse is divided by the number of constraints on its busiest dynamic body.
+        // Static bodies are not counted, so a floor touching many bodies does not soften every contact.
+        for (int c = 0; c < contactCount; c++) {
+            degree[contactA[c]] = 0;
+            degree[contactB[c]] = 0;
+        }
+        for (int k = 0; k < activeJointCount; k++) {
+            int j = activeJoints[k];
+            degree[jointA[j]] = 0;
+            degree[jointB[j]] = 0;
+        }
+        for (int c = 0; c < contactCount; c++) {
+            countConstraint(contactA[c]);
+            countConstraint(contactB[c]);
+        }
+        for (int k = 0; k < activeJointCount; k++) {
+            int j = activeJoints[k];
+            countConstraint(jointA[j]);
+            countConstraint(jointB[j]);
+        }
+
+        for (int iteration = 0; iteration < solverIterations; iteration++) {
+            for (int c = 0; c < contactCount; c++) {
+                dvx[contactA[c]] = 0;
+                dvy[contactA[c]] = 0;
+                dvx[contactB[c]] = 0;
+                dvy[contactB[c]] = 0;
+            }
+            for (int k = 0; k < activeJointCount; k++) {
+                int j = activeJoints[k];
+                dvx[jointA[j]] = 0;
+                dvy[jointA[j]] = 0;
+                dvx[jointB[j]] = 0;
+                dvy[jointB[j]] = 0;
+            }
+
+            for (int c = 0; c < contactCount; c++) {
+                int a = contactA[c];
+                int b = contactB[c];
+                double invSum = invMass[a] + invMass[b];
+                if (invSum == 0) {
+                    continue;
+                }
+                double nx = contactNx[c];
+                double ny = contactNy[c];
+                double vn = (vx[b] - vx[a]) * nx + (vy[b] - vy[a]) * ny;
+                double lambda = (contactTarget[c] - vn) / invSum / Math.max(1, Math.max(degree[a], degree[b]));
+                double accumulated = Math.max(contactImpulse[c] + lambda, 0);
+                lambda = accumulated - contactImpulse[c];
+                contactImpulse[c] = accumulated;
+                applyImpulse(a, b, lambda * nx, lambda * ny);
+            }
+
+            for (int k = 0; k < activeJointCount; k++) {
+                int j = activeJoints[k];
+                int a = jointA[j];
+                int b = jointB[j];
+                double invSum = invMass[a] + invMass[b];
+                if (invSum == 0) {
+                    continue;
+                }
+                double dx = x[b] - x[a];
+                double dy = y[b] - y[a];
+                double dist = Math.sqrt(dx * dx + dy * dy);
+                if (dist == 0) {
+                    continue;
+                }
+                double nx = dx / dist;
+                double ny = dy / dist;
+                double vn = (vx[b] - vx[a]) * nx + (vy[b] - vy[a]) * ny;
+                double bias = -baumgarte / dt * (dist - jointLength[j]);
+                double lambda = (bias - vn) / invSum / Math.max(1, Math.max(degree[a], degree[b]));
+                applyImpulse(a, b, lambda * nx, lambda * ny);
+            }
+
+            for (int c = 0; c < contactCount; c++) {
+                applyVelocityDelta(contactA[c]);
+                applyVelocityDelta(contactB[c]);
+            }
+            for (int k = 0; k < activeJointCount; k++) {
+                int j = activeJoints[k];
+                applyVelocityDelta(jointA[j]);
+                applyVelocityDelta(jointB[j]);
+            }
+        }
+    }
+
+    private void countConstraint(int body) {
+        if (invMass[body] != 0) {
+            degree[body]++;
+        }
+    }
+
+    private void applyImpulse(int a, int b, double px, double py) {
+        dvx[a] -= px * invMass[a];
+        dvy[a] -= py * invMass[a];
+        dvx[b] += px * invMass[b];
+        dvy[b] += py * invMass[b];
+    }
+
+    private void applyVelocityDelta(int body) {
+        // A body shared by several constraints is listed several times; the first visit consumes the delta.
+        vx[body] += dvx[body];
+        vy[body] += dvy[body];
+        dvx[body] = 0;
+        dvy[body] = 0;
+    }
+
+    /**
+     * Builds islands over awake bodies with union-find and puts islands to sleep once all their bodies have been idle long enough.
+     */
+    private void updateSleep(double dt) {
+        double limitSq = sleepVelocity * sleepVelocity;
+        for (int k = 0; k < activeCount; k++) {
+            int i = active[k];
+            parent[i] = i;
+            if (vx[i] * vx[i] + vy[i] * vy[i] < limitSq) {
+                sleepTime[i] += dt;
+            } else {
+                sleepTime[i] = 0;
+            }
+        }
+        for (int c = 0; c < contactCount; c++) {
+            int a = contactA[c];
+            int b = contactB[c];
+            if (invMass[a] != 0 && invMass[b] != 0) {
+                union(a, b);
+            }
+        }
+        for (int k = 0; k < activeJointCount; k++) {
+            int j = activeJoints[k];
+            int a = jointA[j];
+            int b = jointB[j];
+            if (awake[a] && awake[b] && invMass[a] != 0 && invMass[b] != 0) {
+                union(a, b);
+            }
+        }
+
+        for (int k = 0; k < activeCount; k++) {
+            islandSleepTime[active[k]] = Double.POSITIVE_INFINITY;
+        }
+        for (int k = 0; k < activeCount; k++) {
+            int i = active[k];
+            int root = find(i);
+            islandSleepTime[root] = Math.min(islandSleepTime[root], sleepTime[i]);
+        }
+
+        int kept = 0;
+        for (int k = 0; k < activeCount; k++) {
+            int i = active[k];
+            int root = find(i);
+            if (islandSleepTime[root] < timeToSleep) {
+                active[kept++] = i;
+                continue;
+            }
+            // Splice i into the ring headed by its root.
+            awake[i] = false;
+            vx[i] = 0;
+            vy[i] = 0;
+            if (i != root) {
+                sleepNext[i] = sleepNext[root];
+                sleepNext[root] = i;
+            }
+            queueRest(i);
+        }
+        if (kept == activeCount) {
+            return;
+        }
+        activeCount = kept;
+
+        int keptJoints = 0;
+        for (int k = 0; k < activeJointCount; k++) {
+            int j = activeJoints[k];
+            if (awake[jointA[j]] || awake[jointB[j]]) {
+                activeJoints[keptJoints++] = j;
+            } else {
+                jointActive[j] = false;
+            }
+        }
+        activeJointCount = keptJoints;
+    }
+
+    private int find(int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA != rootB) {
+            parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+    }
+
+    private void activate(int body) {
+        awake[body] = true;
+        sleepTime[body] = 0;
+        if (activeCount == active.length) {
+            active = Arrays.copyOf(active, activeCount * 2);
+        }
+        active[activeCount++] = body;
+        activeDirty = true;
+        for (int j = jointHead[body]; j >= 0; j = jointA[j] == body ? jointNextA[j] : jointNextB[j]) {
+            if (!jointActive[j]) {
+                activateJoint(j);
+            }
+        }
+    }
+
+    private void activateJoint(int joint) {
+        jointActive[joint] = true;
+        if (activeJointCount == activeJoints.length) {
+            activeJoints = Arrays.copyOf(activeJoints, activeJointCount * 2);
+        }
+        activeJoints[activeJointCount++] = joint;
+    }
+
+    /**
+     * Queues a static or sleeping body for the rest index. Any earlier entry of the body becomes stale.
+     */
+    private void queueRest(int body) {
+        restStamp[body]++;
+        if (restQueued == restQueue.length) {
+            restQueue = Arrays.copyOf(restQueue, restQueued * 2);
+            restQueueStamp = Arrays.copyOf(restQueueStamp, restQueued * 2);
+        }
+        restQueue[restQueued] = body;
+        restQueueStamp[restQueued] = restStamp[body];
+        restQueued++;
+    }
+
+    private boolean isRestEntry(int body, int stamp) {
+        return !awake[body] && stamp == restStamp[body];
+    }
+
+    /**
+     * Sorts the queued bodies into a run and merges it into the lowest level of the rest index that can
+     * hold both. Every level below that one is merged into the run on the way up and left empty.
+     */
+    private void flushRest() {
+        if (runIds.length < restQueued) {
+            runIds = new int[restQueued];
+            runKeys = new double[restQueued];
+            runStamps = new int[restQueued];
+        }
+        int n = 0;
+        for (int q = 0; q < restQueued; q++) {
+            int b = restQueue[q];
+            if (isRestEntry(b, restQueueStamp[q])) {
+                runIds[n++] = b;
+                minX[b] = x[b] - radius[b];
+                restMaxDiameter = Math.max(restMaxDiameter, 2 * radius[b]);
+            }
+        }
+        restQueued = 0;
+        sortByKey(runIds, 0, n, minX);
+        for (int k = 0; k < n; k++) {
+            runKeys[k] = minX[runIds[k]];
+            runStamps[k] = restStamp[runIds[k]];
+        }
+        runSize = n;
+
+        for (int level = 0; runSize > 0; level++) {
+            if (level == restSizes.length) {
+                restIds = Arrays.copyOf(restIds, level + 1);
+                restKeys = Arrays.copyOf(restKeys, level + 1);
+                restStamps = Arrays.copyOf(restStamps, level + 1);
+                restSizes = Arrays.copyOf(restSizes, level + 1);
+                restIds[level] = new int[0];
+                restKeys[level] = new double[0];
+                restStamps[level] = new int[0];
+            }
+            boolean fits = restSizes[level] + runSize <= (long) REST_RUN << (REST_GROWTH_BITS * level);
+            if (restSizes[level] > 0) {
+                mergeRun(level);
+            }
+            if (fits) {
+                // Swap buffers so the level takes the run and its old arrays are reused for the next run.
+                int[] ids = restIds[level];
+                restIds[level] = runIds;
+                runIds = ids;
+                double[] keys = restKeys[level];
+                restKeys[level] = runKeys;
+                runKeys = keys;
+                int[] stamps = restStamps[level];
+                restStamps[level] = runStamps;
+                runStamps = stamps;
+                restSizes[level] = runSize;
+                runSize = 0;
+            }
+        }
+    }
+
+    /**
+     * Merges a level into the current run, dropping stale entries, and empties the level.
+     */
+    private void mergeRun(int level) {
+        int[] ids = restIds[level];
+        double[] keys = restKeys[level];
+        int[] stamps = restStamps[level];
+        int size = restSizes[level];
+        if (spareIds.length < size + runSize) {
+            int capacity = Math.max(size + runSize, spareIds.length * 2);
+            spareIds = new int[capacity];
+            spareKeys = new double[capacity];
+            spareStamps = new int[capacity];
+        }
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < size || j < runSize) {
+            int id;
+            double key;
+            int stamp;
+            if (j == runSize || (i < size && keys[i] <= runKeys[j])) {
+                id = ids[i];
+                key = keys[i];
+                stamp = stamps[i++];
+            } else {
+                id = runIds[j];
+                key = runKeys[j];
+                stamp = runStamps[j++];
+            }
+            if (isRestEntry(id, stamp)) {
+                spareIds[n] = id;
+                spareKeys[n] = key;
+                spareStamps[n] = stamp;
+                n++;
+            }
+        }
+        restSizes[level] = 0;
+        int[] swapIds = runIds;
+        runIds = spareIds;
+        spareIds = swapIds;
+        double[] swapKeys = runKeys;
+        runKeys = spareKeys;
+        spareKeys = swapKeys;
+        int[] swapStamps = runStamps;
+        runStamps = spareStamps;
+        spareStamps = swapStamps;
+        runSize = n;
+    }
+
+    private static int lowerBound(double[] keys, int size, double key) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Sorts body ids by key. Uses quicksort with an insertion-sort cutoff.
+     */
+    static void sortByKey(int[] ids, int from, int to, double[] keys) {
+        while (to - from > 16) {
+            int mid = (from + to) >>> 1;
+            double pivot = keys[ids[mid]];
+            int i = from;
+            int j = to - 1;
+            while (i <= j) {
+                while (keys[ids[i]] < pivot) i++;
+                while (keys[ids[j]] > pivot) j--;
+                if (i <= j) {
+                    int tmp = ids[i];
+                    ids[i] = ids[j];
+                    ids[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            // Recurse into the smaller half to bound stack depth.
+            if (j - from < to - i) {
+                sortByKey(ids, from, j + 1, keys);
+                from = i;
+            } else {
+                sortByKey(ids, i, to, keys);
+                to = j + 1;
+            }
+        }
+        insertionSortByKey(ids, from, to, keys);
+    }
+
+    /**
+     * Sorts body ids by key with insertion sort; close to linear when the order barely changed since the last step.
+     */
+    static void insertionSortByKey(int[] ids, int from, int to, double[] keys) {
+        for (int i = from + 1; i < to; i++) {
+            int id = ids[i];
+            double key = keys[id];
+            int j = i - 1;
+            while (j >= from && keys[ids[j]] > key) {
+                ids[j + 1] = ids[j];
+                j--;
+            }
+            ids[j + 1] = id;
+        }
+    }
+
+    private void ensureBodyCapacity(int capacity) {
+        if (capacity <= x.length) {
+            return;
+        }
+        int n = Math.max(capacity, x.length * 2);
+        x = Arrays.copyOf(x, n);
+        y = Arrays.copyOf(y, n);
+        vx = Arrays.copyOf(vx, n);
+        vy = Arrays.copyOf(vy, n);
+        radius = Arrays.copyOf(radius, n);
+        invMass = Arrays.copyOf(invMass, n);
+        fx = Arrays.copyOf(fx, n);
+        fy = Arrays.copyOf(fy, n);
+        sleepTime = Arrays.copyOf(sleepTime, n);
+        awake = Arrays.copyOf(awake, n);
+        sleepNext = Arrays.copyOf(sleepNext, n);
+        jointHead = Arrays.copyOf(jointHead, n);
+        restStamp = Arrays.copyOf(restStamp, n);
+        minX = Arrays.copyOf(minX, n);
+        dvx = Arrays.copyOf(dvx, n);
+        dvy = Arrays.copyOf(dvy, n);
+        degree = Arrays.copyOf(degree, n);
+        parent = Arrays.copyOf(parent, n);
+        islandSleepTime = Arrays.copyOf(islandSleepTime, n);
+    }
+
+    private void growContacts() {
+        int n = contactA.length * 2;
+        contactA = Arrays.copyOf(contactA, n);
+        contactB = Arrays.copyOf(contactB, n);
+        contactNx = Arrays.copyOf(contactNx, n);
+        contactNy = Arrays.copyOf(contactNy, n);
+        contactDepth = Arrays.copyOf(contactDepth, n);
+        contactTarget = Arrays.copyOf(contactTarget, n);
+        contactImpulse = Arrays.copyOf(contactImpulse, n);
+    }
+
+    private void checkBody(int body) {
+        if (body < 0 || body >= count) {
+            throw new IndexOutOfBoundsException("Invalid body id: " + body);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PhysicsWorld(bodies: %d, awake: %d)", count, activeCount);
+    }
+}
@@ -0,0 +1,11 @@
+package com.advn.physics;
+
+/**
+ * Storage precision for bulk buffers.
+ */
+public enum Precision {
+    /** 64-bit {@code double} storage. */
+    DOUBLE,
+    /** 32-bit {@code float} storage; half the memory traffic at roughly 7 significant digits. */
+    SINGLE
+}
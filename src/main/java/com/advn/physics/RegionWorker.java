@@ -0,0 +1,443 @@
+package com.advn.physics;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Simulates one vertical strip of a world that is split along x into regions, each owned by its
+ * own worker, usually in its own process.
+ *
+ * <p>Region {@code r} owns the bodies with {@code borders[r - 1] <= x < borders[r]}; the first and
+ * last regions extend to infinity. Each step the worker fills a {@link PhysicsWorld} with its
+ * own bodies plus ghost copies of the neighbours' bodies within the halo width of the shared
+ * border, steps it, and keeps only its own bodies. It then exchanges with each neighbour over a
+ * {@link HaloTransport}: bodies that left the strip migrate to the neighbour, and the bodies now
+ * within the halo are sent as the neighbour's ghosts for the next step.
+ *
+ * <p>A halo of one contact distance (twice the largest radius) finds every contact. The Jacobi
+ * solver passes impulses one contact further per iteration, so a halo of {@code iterations + 1}
+ * contact distances is needed for results identical to a single-process run. A thinner halo is
+ * cheaper but lets contact chains that cross a border drift apart slowly. Sleeping is disabled,
+ * because the world is rebuilt every step. Migration moves a body by one region per step, so a
+ * body crossing several strips in one step is forwarded over the following steps.
+ *
+ * <p>Links are exchanged in two phases, first the borders with an even index and then the odd ones.
+ * On each link the lower region sends first. A blocking transport therefore never has both ends
+ * of a link sending at once.
+ */
+public class RegionWorker {
+    /** Values per body in messages and results: id, x, y, vx, vy, radius, mass. */
+    static final int FIELDS = 7;
+    /** Columns of a scene matrix: x, y, vx, vy, radius, mass; the row index is the body id. */
+    static final int SCENE_COLUMNS = 6;
+    static final int SCENE_CHUNK_ROWS = 1 << 16;
+
+    private final int region;
+    private final int regions;
+    private final double lo;
+    private final double hi;
+    private final double halo;
+    private final HaloTransport transport;
+    private final PhysicsWorld world = new PhysicsWorld();
+
+    private final Bodies owned = new Bodies();
+    private final Bodies ghosts = new Bodies();
+    private final Bodies emigrants = new Bodies();
+    private final Bodies toLeft = new Bodies();
+    private final Bodies toRight = new Bodies();
+
+    private long steps;
+    private long migratedOut;
+    private long migratedIn;
+    private long elapsedNanos;
+
+    /**
+     * Creates the worker for one region.
+     *
+     * @param region    this region's index
+     * @param borders   the x coordinates separating the regions, ascending; {@code borders.length + 1} regions
+     * @param halo      the halo width
+     * @param transport the link to the neighbouring regions
+     * @throws IllegalArgumentException if the region is out of range, the borders are not ascending or the halo is negative
+     */
+    public RegionWorker(int region, double[] borders, double halo, HaloTransport transport) {
+        this.regions = borders.length + 1;
+        if (region < 0 || region >= regions) {
+            throw new IllegalArgumentException("Invalid region: " + region);
+        }
+        for (int i = 1; i < borders.length; i++) {
+            if (!(borders[i] > borders[i - 1])) {
+                throw new IllegalArgumentException("Region borders must be strictly ascending.");
+            }
+        }
+        if (halo < 0) {
+            throw new IllegalArgumentException("Halo width cannot be negative.");
+        }
+        this.region = region;
+        this.lo = region == 0 ? Double.NEGATIVE_INFINITY : borders[region - 1];
+        this.hi = region == regions - 1 ? Double.POSITIVE_INFINITY : borders[region];
+        this.halo = halo;
+        this.transport = transport;
+        world.setSleepingEnabled(false);
+    }
+
+    public void setGravity(double gx, double gy) {
+        world.setGravity(gx, gy);
+    }
+
+    public void setRestitution(double restitution) {
+        world.setRestitution(restitution);
+    }
+
+    public void setSolverIterations(int iterations) {
+        world.setSolverIterations(iterations);
+    }
+
+    /**
+     * Adds a body to this region. A body outside the strip migrates at the next exchange.
+     *
+     * @param id     the global body id
+     * @param x      the x position
+     * @param y      the y position
+     * @param vx     the velocity x component
+     * @param vy     the velocity y component
+     * @param radius the radius
+     * @param mass   the mass, or 0 for a static body
+     */
+    public void addBody(long id, double x, double y, double vx, double vy, double radius, double mass) {
+        owned.add(id, x, y, vx, vy, radius, mass);
+    }
+
+    /**
+     * Adds the rows of a scene matrix that fall inside this region's strip.
+     *
+     * @param scene    rows of {@link #SCENE_COLUMNS} values
+     * @param firstId  the global id of the first row
+     * @throws IllegalArgumentException if the scene has the wrong number of columns
+     */
+    public void addSceneRows(Matrix scene, long firstId) {
+        if (scene.getCols() != SCENE_COLUMNS) {
+            throw new IllegalArgumentException("Scene matrix must have " + SCENE_COLUMNS + " columns.");
+        }
+        double[][] rows = scene.rawValues();
+        for (int i = 0; i < rows.length; i++) {
+            double[] r = rows[i];
+            if (r[0] >= lo && r[0] < hi) {
+                owned.add(firstId + i, r[0], r[1], r[2], r[3], r[4], r[5]);
+            }
+        }
+    }
+
+    /**
+     * Performs the initial exchange so that every region has its ghosts before the first step.
+     * Must be called once, by every region, before {@link #step(double)}.
+     *
+     * @throws IOException if the transport fails
+     */
+    public void start() throws IOException {
+        exchange();
+    }
+
+    /**
+     * Advances this region by one step and exchanges with its neighbours.
+     *
+     * @param dt the time step
+     * @throws IOException if the transport fails
+     */
+    public void step(double dt) throws IOException {
+        long start = System.nanoTime();
+        world.clear();
+        load(owned);
+        load(ghosts);
+        world.step(dt);
+        double[] b = owned.data;
+        for (int i = 0; i < owned.count; i++) {
+            int o = i * FIELDS;
+            b[o + 1] = world.x(i);
+            b[o + 2] = world.y(i);
+            b[o + 3] = world.vx(i);
+            b[o + 4] = world.vy(i);
+        }
+        exchange();
+        steps++;
+        elapsedNanos += System.nanoTime() - start;
+    }
+
+    public int getRegion() {
+        return region;
+    }
+
+    public int getOwnedCount() {
+        return owned.count;
+    }
+
+    public int getGhostCount() {
+        return ghosts.count;
+    }
+
+    public long getMigratedOut() {
+        return migratedOut;
+    }
+
+    public long getMigratedIn() {
+        return migratedIn;
+    }
+
+    /**
+     * Returns the owned bodies, preceded by one summary row.
+     * The summary row holds region, owned count, steps, elapsed nanoseconds, bodies migrated in and out, and 0.
+     * Every other row holds id, x, y, vx, vy, radius and mass.
+     *
+     * @return a matrix of {@code getOwnedCount() + 1} rows and {@link #FIELDS} columns
+     */
+    public Matrix getState() {
+        Matrix state = new Matrix(owned.count + 1, FIELDS);
+        double[][] rows = state.rawValues();
+        double[] summary = rows[0];
+        summary[0] = region;
+        summary[1] = owned.count;
+        summary[2] = steps;
+        summary[3] = elapsedNanos;
+        summary[4] = migratedIn;
+        summary[5] = migratedOut;
+        for (int i = 0; i < owned.count; i++) {
+            System.arraycopy(owned.data, i * FIELDS, rows[i + 1], 0, FIELDS);
+        }
+        return state;
+    }
+
+    private void load(Bodies bodies) {
+        double[] b = bodies.data;
+        for (int i = 0; i < bodies.count; i++) {
+            int o = i * FIELDS;
+            int id = world.addBody(b[o + 1], b[o + 2], b[o + 5], b[o + 6]);
+            world.setVelocity(id, b[o + 3], b[o + 4]);
+        }
+    }
+
+    private void exchange() throws IOException {
+        // Message layout: migrant count, migrants, ghost count, ghosts.
+        toLeft.clear();
+        toRight.clear();
+        emigrants.clear();
+        toLeft.addCount(0);
+        toRight.addCount(0);
+        int kept = 0;
+        double[] b = owned.data;
+        for (int i = 0; i < owned.count; i++) {
+            int o = i * FIELDS;
+            double x = b[o + 1];
+            if (x < lo) {
+                toLeft.copy(b, o);
+                emigrants.copy(b, o);
+            } else if (x >= hi) {
+                toRight.copy(b, o);
+                emigrants.copy(b, o);
+            } else {
+                if (kept != i) {
+                    System.arraycopy(b, o, b, kept * FIELDS, FIELDS);
+                }
+                kept++;
+            }
+        }
+        owned.count = kept;
+        migratedOut += emigrants.count;
+        int leftGhosts = toLeft.beginSection();
+        int rightGhosts = toRight.beginSection();
+        for (int i = 0; i < owned.count; i++) {
+            int o = i * FIELDS;
+            double x = b[o + 1];
+            if (x < lo + halo) {
+                toLeft.copy(b, o);
+            }
+            if (x >= hi - halo) {
+                toRight.copy(b, o);
+            }
+        }
+        toLeft.endSection(leftGhosts);
+        toRight.endSection(rightGhosts);
+
+        // Emigrants stay visible as ghosts for the next step; their new owner computes its ghosts before receiving them.
+        ghosts.clear();
+        double[] e = emigrants.data;
+        for (int i = 0; i < emigrants.count; i++) {
+            int o = i * FIELDS;
+            double x = e[o + 1];
+            if (x >= lo - halo && x < hi + halo) {
+                ghosts.copy(e, o);
+            }
+        }
+
+        for (int phase = 0; phase < 2; phase++) {
+            int leftBorder = region - 1;
+            if (leftBorder >= 0 && leftBorder % 2 == phase) {
+                absorb(transport.receive(region - 1));
+                transport.send(region - 1, toLeft.data, toLeft.length());
+            }
+            if (region < regions - 1 && region % 2 == phase) {
+                transport.send(region + 1, toRight.data, toRight.length());
+                absorb(transport.receive(region + 1));
+            }
+        }
+    }
+
+    private void absorb(double[] message) throws IOException {
+        int migrants = checkSection(message, 0);
+        int ghostStart = 1 + migrants * FIELDS;
+        int ghostCount = checkSection(message, ghostStart);
+        for (int i = 0; i < migrants; i++) {
+            owned.copy(message, 1 + i * FIELDS);
+        }
+        migratedIn += migrants;
+        for (int i = 0; i < ghostCount; i++) {
+            ghosts.copy(message, ghostStart + 1 + i * FIELDS);
+        }
+    }
+
+    private static int checkSection(double[] message, int at) throws IOException {
+        if (at >= message.length) {
+            throw new IOException("Truncated halo message.");
+        }
+        int count = (int) message[at];
+        if (count < 0 || at + 1 + (long) count * FIELDS > message.length) {
+            throw new IOException("Truncated halo message.");
+        }
+        return count;
+    }
+
+    /**
+     * Runs one region as a process.
+     * <pre>
+     * RegionWorker region borders transport scene steps dt halo output [gx gy restitution iterations]
+     * </pre>
+     * {@code borders} is a comma-separated list, or {@code -} for a single region. {@code transport}
+     * is {@code socket:<basePort>} or {@code mmap:<directory>}. {@code scene} is a binary matrix file
+     * (see {@link MatrixIO}) of {@link #SCENE_COLUMNS} columns. {@code output} receives {@link #getState()}.
+     *
+     * @param args the arguments
+     * @throws IOException if reading, writing or the transport fails
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 8 && args.length != 12) {
+            System.err.println("Usage: RegionWorker region borders transport scene steps dt halo output"
+                    + " [gx gy restitution iterations]");
+            System.exit(2);
+        }
+        int region = Integer.parseInt(args[0]);
+        double[] borders = parseBorders(args[1]);
+        Path scene = Paths.get(args[3]);
+        int steps = Integer.parseInt(args[4]);
+        double dt = Double.parseDouble(args[5]);
+        double halo = Double.parseDouble(args[6]);
+        Path output = Paths.get(args[7]);
+
+        try (HaloTransport transport = openTransport(args[2], region, borders.length + 1)) {
+            RegionWorker worker = new RegionWorker(region, borders, halo, transport);
+            if (args.length == 12) {
+                worker.setGravity(Double.parseDouble(args[8]), Double.parseDouble(args[9]));
+                worker.setRestitution(Double.parseDouble(args[10]));
+                worker.setSolverIterations(Integer.parseInt(args[11]));
+            }
+            MatrixIO.readBinaryChunks(scene, SCENE_CHUNK_ROWS, worker::addSceneRows);
+            worker.start();
+            for (int s = 0; s < steps; s++) {
+                worker.step(dt);
+            }
+            MatrixIO.writeBinary(worker.getState(), output);
+        }
+    }
+
+    static double[] parseBorders(String spec) {
+        if (spec.equals("-")) {
+            return new double[0];
+        }
+        String[] parts = spec.split(",");
+        double[] borders = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            borders[i] = Double.parseDouble(parts[i]);
+        }
+        return borders;
+    }
+
+    static HaloTransport openTransport(String spec, int region, int regions) throws IOException {
+        if (spec.startsWith("socket:")) {
+            return SocketHaloTransport.connect(region, regions, Integer.parseInt(spec.substring(7)));
+        }
+        if (spec.startsWith("mmap:")) {
+            return new MappedFileHaloTransport(Paths.get(spec.substring(5)), region, regions);
+        }
+        throw new IllegalArgumentException("Unknown transport: " + spec);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RegionWorker(region: %d, owned: %d, ghosts: %d)", region, owned.count, ghosts.count);
+    }
+
+    /**
+     * A growable flat list of body records, also used to assemble messages.
+     */
+    private static final class Bodies {
+        double[] data = new double[FIELDS * 16];
+        int count;
+        private int extra;
+
+        void clear() {
+            count = 0;
+            extra = 0;
+        }
+
+        int length() {
+            return count * FIELDS + extra;
+        }
+
+        void add(long id, double x, double y, double vx, double vy, double radius, double mass) {
+            int o = reserve(FIELDS);
+            data[o] = id;
+            data[o + 1] = x;
+            data[o + 2] = y;
+            data[o + 3] = vx;
+            data[o + 4] = vy;
+            data[o + 5] = radius;
+            data[o + 6] = mass;
+            count++;
+        }
+
+        void copy(double[] source, int offset) {
+            int o = reserve(FIELDS);
+            System.arraycopy(source, offset, data, o, FIELDS);
+            count++;
+        }
+
+        void addCount(int value) {
+            data[reserve(1)] = value;
+            extra++;
+        }
+
+        /**
+         * Closes the current section's count and opens a new one.
+         *
+         * @return the slot of the new section's count
+         */
+        int beginSection() {
+            data[0] = count;
+            int slot = length();
+            addCount(0);
+            return slot;
+        }
+
+        void endSection(int slot) {
+            data[slot] = count - data[0];
+        }
+
+        private int reserve(int values) {
+            int o = length();
+            if (o + values > data.length) {
+                data = Arrays.copyOf(data, Math.max(o + values, data.length * 2));
+            }
+            return o;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.advn.physics;
+
+/**
+ * One independent simulation in a {@link ScenarioBatchRunner} sweep.
+ * Implementations build their own bodies from the scenario index and must not share mutable state.
+ */
+@FunctionalInterface
+public interface Scenario {
+    /**
+     * Runs the scenario and writes its results.
+     *
+     * @param index   the scenario index, from 0 to the batch size
+     * @param results the shared result buffer
+     * @param offset  the first slot of this scenario's results; exactly the batch result width slots may be written
+     * @throws Exception if the scenario fails; its results are then recorded as NaN
+     */
+    void run(int index, double[] results, int offset) throws Exception;
+}
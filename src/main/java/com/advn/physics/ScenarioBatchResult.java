@@ -0,0 +1,96 @@
+package com.advn.physics;
+
+import java.util.BitSet;
+
+/**
+ * Results of a {@link ScenarioBatchRunner} run. Scenario {@code i} owns the slots
+ * {@code [i * width, (i + 1) * width)} of the flat result buffer; failed scenarios hold NaN.
+ */
+public class ScenarioBatchResult {
+    private final int count;
+    private final int width;
+    private final double[] results;
+    private final BitSet failed;
+    private final Throwable firstFailure;
+    private final ScenarioStatistics statistics;
+    private final long elapsedNanos;
+
+    ScenarioBatchResult(int count, int width, double[] results, BitSet failed, Throwable firstFailure,
+                        ScenarioStatistics statistics, long elapsedNanos) {
+        this.count = count;
+        this.width = width;
+        this.results = results;
+        this.failed = failed;
+        this.firstFailure = firstFailure;
+        this.statistics = statistics;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getScenarioCount() {
+        return count;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets one result value.
+     *
+     * @param scenario the scenario index
+     * @param column   the result column
+     * @return the value
+     * @throws IndexOutOfBoundsException if either index is out of range
+     */
+    public double get(int scenario, int column) {
+        if (scenario < 0 || scenario >= count || column < 0 || column >= width) {
+            throw new IndexOutOfBoundsException("Invalid index: (" + scenario + ", " + column + ").");
+        }
+        return results[scenario * width + column];
+    }
+
+    /**
+     * Returns the flat result buffer without copying.
+     *
+     * @return the buffer of {@code count * width} values
+     */
+    public double[] getResults() {
+        return results;
+    }
+
+    /**
+     * Gets the statistics over all successful scenarios.
+     *
+     * @return the statistics
+     */
+    public ScenarioStatistics getStatistics() {
+        return statistics;
+    }
+
+    public boolean isFailed(int scenario) {
+        return failed.get(scenario);
+    }
+
+    public int getFailureCount() {
+        return failed.cardinality();
+    }
+
+    /**
+     * Gets the exception thrown by the first scenario that failed.
+     *
+     * @return the exception, or null if all scenarios succeeded
+     */
+    public Throwable getFirstFailure() {
+        return firstFailure;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ScenarioBatchResult(scenarios: %d, failed: %d, %.2f ms)",
+                count, getFailureCount(), elapsedNanos / 1e6);
+    }
+}
@@ -0,0 +1,277 @@
+package com.advn.physics;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs large sweeps of independent {@link Scenario}s.
+ *
+ * <p>Each scenario writes into its own slice of one flat {@code double[]} result buffer, so no
+ * per-scenario result objects are created. The submitting thread blocks once {@code maxInFlight}
+ * scenarios are pending, which bounds memory for sweeps of any size. Statistics are folded in as
+ * scenarios finish and can be streamed to a {@link ProgressListener}.
+ *
+ * <p>{@link #virtualThreads(int)} starts one virtual thread per scenario where the JVM supports it
+ * and falls back to a fixed pool otherwise; {@link #bounded(int)} always uses a fixed pool, which is
+ * the better choice for purely CPU-bound scenarios.
+ *
+ * <pre>
+ * try (ScenarioBatchRunner runner = ScenarioBatchRunner.bounded(8)) {
+ *     ScenarioBatchResult result = runner.run(10_000, 2, (i, out, offset) -&gt; {
+ *         PhysicsWorld world = new PhysicsWorld();
+ *         ...
+ *         out[offset] = world.getPosition(0).getX();
+ *         out[offset + 1] = world.getPosition(0).getY();
+ *     });
+ * }
+ * </pre>
+ */
+public class ScenarioBatchRunner implements AutoCloseable {
+    private final ExecutorService executor;
+    private final int maxInFlight;
+    private final boolean virtual;
+
+    private ScenarioBatchRunner(ExecutorService executor, int maxInFlight, boolean virtual) {
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        this.virtual = virtual;
+    }
+
+    /**
+     * Creates a runner that starts a virtual thread per scenario, or a pool sized to the
+     * available processors if virtual threads are not available.
+     *
+     * @param maxInFlight the maximum number of scenarios submitted but not yet finished
+     * @return the runner
+     */
+    public static ScenarioBatchRunner virtualThreads(int maxInFlight) {
+        checkPositive(maxInFlight);
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return new ScenarioBatchRunner((ExecutorService) factory.invoke(null), maxInFlight, true);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            int threads = Runtime.getRuntime().availableProcessors();
+            return new ScenarioBatchRunner(Executors.newFixedThreadPool(threads), maxInFlight, false);
+        }
+    }
+
+    /**
+     * Creates a runner backed by a fixed pool of platform threads.
+     *
+     * @param threads the number of worker threads
+     * @return the runner
+     */
+    public static ScenarioBatchRunner bounded(int threads) {
+        checkPositive(threads);
+        return new ScenarioBatchRunner(Executors.newFixedThreadPool(threads), threads * 4, false);
+    }
+
+    /**
+     * Checks whether scenarios run on virtual threads.
+     *
+     * @return true if virtual threads are used
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Runs a batch without progress reporting.
+     *
+     * @see #run(int, int, Scenario, ProgressListener, int)
+     */
+    public ScenarioBatchResult run(int scenarios, int width, Scenario scenario) throws InterruptedException {
+        return run(scenarios, width, scenario, null, 0);
+    }
+
+    /**
+     * Runs a batch of scenarios and waits for all of them to finish.
+     *
+     * @param scenarios      the number of scenarios
+     * @param width          the number of result values per scenario
+     * @param scenario       the scenario to run for every index
+     * @param listener       receives statistics snapshots, or null
+     * @param reportInterval report after this many completions; the final state is always reported
+     * @return the results
+     * @throws InterruptedException if the calling thread is interrupted while submitting or waiting
+     * @throws IllegalArgumentException if the sizes are negative or the buffer would exceed the maximum array size
+     */
+    public ScenarioBatchResult run(int scenarios, int width, Scenario scenario, ProgressListener listener,
+                                   int reportInterval) throws InterruptedException {
+        if (scenarios < 0 || width < 0) {
+            throw new IllegalArgumentException("Scenario count and width cannot be negative.");
+        }
+        if ((long) scenarios * width > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Result buffer too large: " + scenarios + " x " + width);
+        }
+
+        long start = System.nanoTime();
+        Batch batch = new Batch(scenarios, width, scenario, listener, reportInterval);
+        Semaphore permits = new Semaphore(maxInFlight);
+        for (int i = 0; i < scenarios; i++) {
+            permits.acquire();
+            int index = i;
+            try {
+                executor.execute(() -> {
+                    try {
+                        batch.runOne(index);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                throw new IllegalStateException("Runner has been closed.", e);
+            }
+        }
+        permits.acquire(maxInFlight);
+        permits.release(maxInFlight);
+        batch.report(true);
+        return batch.toResult(System.nanoTime() - start);
+    }
+
+    /**
+     * Shuts the executor down and waits for running scenarios to finish.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                // Keep waiting; scenarios are not cancelled.
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void checkPositive(int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException("Value must be positive: " + value);
+        }
+    }
+
+    /**
+     * Receives statistics while a batch is running. Interval reports are made from worker threads and
+     * the final report from the thread that called {@code run}. Calls are made one at a time, and the
+     * number of completed scenarios never decreases from one call to the next.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * Called after every report interval and once when the batch is complete.
+         *
+         * @param completed  the number of finished scenarios, including failed ones
+         * @param total      the number of scenarios in the batch
+         * @param statistics a snapshot of the statistics over successful scenarios
+         */
+        void onProgress(int completed, int total, ScenarioStatistics statistics);
+    }
+
+    /**
+     * Shared state of one run. A lock rather than {@code synchronized} keeps virtual threads unpinned.
+     */
+    private static final class Batch {
+        private final int total;
+        private final int width;
+        private final Scenario scenario;
+        private final ProgressListener listener;
+        private final int reportInterval;
+        private final double[] results;
+        private final ScenarioStatistics statistics;
+        private final BitSet failed = new BitSet();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ReentrantLock reportLock = new ReentrantLock();
+        private Throwable firstFailure;
+        private int completed;
+        private int lastReported = -1;
+
+        Batch(int total, int width, Scenario scenario, ProgressListener listener, int reportInterval) {
+            this.total = total;
+            this.width = width;
+            this.scenario = scenario;
+            this.listener = listener;
+            this.reportInterval = reportInterval;
+            this.results = new double[total * width];
+            this.statistics = new ScenarioStatistics(width);
+        }
+
+        void runOne(int index) {
+            int offset = index * width;
+            Throwable failure = null;
+            try {
+                scenario.run(index, results, offset);
+            } catch (Throwable t) {
+                failure = t;
+                Arrays.fill(results, offset, offset + width, Double.NaN);
+            }
+
+            boolean due;
+            lock.lock();
+            try {
+                if (failure == null) {
+                    statistics.add(results, offset);
+                } else {
+                    failed.set(index);
+                    if (firstFailure == null) {
+                        firstFailure = failure;
+                    }
+                }
+                completed++;
+                due = reportInterval > 0 && completed % reportInterval == 0 && completed < total;
+            } finally {
+                lock.unlock();
+            }
+            if (due) {
+                report(false);
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+        }
+
+        void report(boolean always) {
+            if (listener == null || (!always && reportInterval <= 0)) {
+                return;
+            }
+            // The snapshot is taken under the report lock, so reports are delivered in completion order.
+            reportLock.lock();
+            try {
+                int done;
+                ScenarioStatistics snapshot;
+                lock.lock();
+                try {
+                    done = completed;
+                    if (!always && done <= lastReported) {
+                        return;
+                    }
+                    snapshot = statistics.copy();
+                } finally {
+                    lock.unlock();
+                }
+                lastReported = done;
+                listener.onProgress(done, total, snapshot);
+            } finally {
+                reportLock.unlock();
+            }
+        }
+
+        ScenarioBatchResult toResult(long elapsedNanos) {
+            lock.lock();
+            try {
+                return new ScenarioBatchResult(total, width, results, (BitSet) failed.clone(), firstFailure,
+                        statistics.copy(), elapsedNanos);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.advn.physics;
+
+import java.util.Arrays;
+
+/**
+ * Running per-column statistics over scenario results, updated with Welford's algorithm so a
+ * single pass gives a numerically stable mean and variance. Instances are not thread-safe;
+ * {@link ScenarioBatchRunner} updates them under a lock and hands out copies.
+ */
+public class ScenarioStatistics {
+    private final int width;
+    private long count;
+    private final double[] mean;
+    private final double[] m2;
+    private final double[] min;
+    private final double[] max;
+
+    /**
+     * Creates empty statistics.
+     *
+     * @param width the number of result columns
+     */
+    public ScenarioStatistics(int width) {
+        this.width = width;
+        this.mean = new double[width];
+        this.m2 = new double[width];
+        this.min = new double[width];
+        this.max = new double[width];
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+    }
+
+    private ScenarioStatistics(ScenarioStatistics other) {
+        this.width = other.width;
+        this.count = other.count;
+        this.mean = other.mean.clone();
+        this.m2 = other.m2.clone();
+        this.min = other.min.clone();
+        this.max = other.max.clone();
+    }
+
+    /**
+     * Adds one scenario's results.
+     *
+     * @param values the buffer holding the results
+     * @param offset the first result slot
+     */
+    public void add(double[] values, int offset) {
+        count++;
+        for (int c = 0; c < width; c++) {
+            double value = values[offset + c];
+            double delta = value - mean[c];
+            mean[c] += delta / count;
+            m2[c] += delta * (value - mean[c]);
+            if (value < min[c]) min[c] = value;
+            if (value > max[c]) max[c] = value;
+        }
+    }
+
+    /**
+     * Merges another set of statistics into this one (Chan et al. parallel update).
+     *
+     * @param other the statistics to merge
+     * @throws IllegalArgumentException if the widths differ
+     */
+    public void merge(ScenarioStatistics other) {
+        if (other.width != width) {
+            throw new IllegalArgumentException("Statistics widths do not match.");
+        }
+        if (other.count == 0) {
+            return;
+        }
+        long total = count + other.count;
+        for (int c = 0; c < width; c++) {
+            double delta = other.mean[c] - mean[c];
+            mean[c] += delta * other.count / total;
+            m2[c] += other.m2[c] + delta * delta * ((double) count * other.count / total);
+            min[c] = Math.min(min[c], other.min[c]);
+            max[c] = Math.max(max[c], other.max[c]);
+        }
+        count = total;
+    }
+
+    /**
+     * Returns an independent copy of the current statistics.
+     *
+     * @return the copy
+     */
+    public ScenarioStatistics copy() {
+        return new ScenarioStatistics(this);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean(int column) {
+        return count == 0 ? Double.NaN : mean[column];
+    }
+
+    /**
+     * Gets the sample variance of a column.
+     *
+     * @param column the column index
+     * @return the variance, or NaN with fewer than two samples
+     */
+    public double getVariance(int column) {
+        return count < 2 ? Double.NaN : m2[column] / (count - 1);
+    }
+
+    public double getStandardDeviation(int column) {
+        return Math.sqrt(getVariance(column));
+    }
+
+    public double getMin(int column) {
+        return count == 0 ? Double.NaN : min[column];
+    }
+
+    public double getMax(int column) {
+        return count == 0 ? Double.NaN : max[column];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("ScenarioStatistics(count: %d)", count));
+        for (int c = 0; c < width; c++) {
+            sb.append(String.format("%n  [%d] mean: %.4f, sd: %.4f, min: %.4f, max: %.4f",
+                    c, getMean(c), getStandardDeviation(c), getMin(c), getMax(c)));
+        }
+        return sb.toString();
+    }
+}
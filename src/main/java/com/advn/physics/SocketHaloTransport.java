@@ -0,0 +1,166 @@
+package com.advn.physics;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A {@link HaloTransport} over loopback TCP sockets for regions laid out in a row.
+ *
+ * <p>Region {@code r} listens on {@code basePort + r}, connects to region {@code r - 1} and accepts
+ * the connection from region {@code r + 1}. Each message is sent as an int32 count followed by
+ * little-endian float64 values.
+ */
+public class SocketHaloTransport implements HaloTransport {
+    private static final long CONNECT_TIMEOUT_MILLIS = 30_000;
+
+    private final int region;
+    private final SocketChannel left;
+    private final SocketChannel right;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+
+    private SocketHaloTransport(int region, SocketChannel left, SocketChannel right) {
+        this.region = region;
+        this.left = left;
+        this.right = right;
+    }
+
+    /**
+     * Connects one region to its neighbours, waiting up to 30 seconds for them to start.
+     *
+     * @param region   this region's index
+     * @param regions  the number of regions
+     * @param basePort the port of region 0; region {@code r} uses {@code basePort + r}
+     * @return the connected transport
+     * @throws IOException if a neighbour cannot be reached
+     * @throws IllegalArgumentException if the region index is out of range
+     */
+    public static SocketHaloTransport connect(int region, int regions, int basePort) throws IOException {
+        if (region < 0 || region >= regions) {
+            throw new IllegalArgumentException("Invalid region: " + region);
+        }
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        SocketChannel left = null;
+        SocketChannel right = null;
+        try (ServerSocketChannel server = region + 1 < regions ? ServerSocketChannel.open() : null) {
+            if (server != null) {
+                server.bind(new InetSocketAddress(loopback, basePort + region));
+            }
+            if (region > 0) {
+                left = connectWithRetry(new InetSocketAddress(loopback, basePort + region - 1));
+            }
+            if (server != null) {
+                right = server.accept();
+                right.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            }
+        } catch (IOException e) {
+            if (left != null) {
+                left.close();
+            }
+            throw e;
+        }
+        return new SocketHaloTransport(region, left, right);
+    }
+
+    private static SocketChannel connectWithRetry(InetSocketAddress address) throws IOException {
+        long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MILLIS;
+        while (true) {
+            try {
+                SocketChannel channel = SocketChannel.open(address);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                return channel;
+            } catch (ConnectException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while connecting to " + address, interrupted);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void send(int region, double[] data, int length) throws IOException {
+        SocketChannel channel = channel(region);
+        ensureBuffer(Integer.BYTES + (long) length * Double.BYTES);
+        buffer.clear();
+        buffer.putInt(length);
+        buffer.asDoubleBuffer().put(data, 0, length);
+        buffer.position(Integer.BYTES + length * Double.BYTES);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    @Override
+    public double[] receive(int region) throws IOException {
+        SocketChannel channel = channel(region);
+        buffer.clear();
+        buffer.limit(Integer.BYTES);
+        readFully(channel);
+        int length = buffer.getInt(0);
+        if (length < 0) {
+            throw new IOException("Corrupt halo message from region " + region + ".");
+        }
+        ensureBuffer((long) length * Double.BYTES);
+        buffer.clear();
+        buffer.limit(length * Double.BYTES);
+        readFully(channel);
+        buffer.flip();
+        double[] data = new double[length];
+        buffer.asDoubleBuffer().get(data);
+        return data;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (left != null) {
+                left.close();
+            }
+        } finally {
+            if (right != null) {
+                right.close();
+            }
+        }
+    }
+
+    private void readFully(SocketChannel channel) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Halo link closed by peer.");
+            }
+        }
+    }
+
+    private SocketChannel channel(int peer) {
+        if (peer == region - 1 && left != null) {
+            return left;
+        }
+        if (peer == region + 1 && right != null) {
+            return right;
+        }
+        throw new IllegalArgumentException("Region " + peer + " is not a neighbour of region " + region + ".");
+    }
+
+    private void ensureBuffer(long bytes) throws IOException {
+        if (bytes > Integer.MAX_VALUE - 8) {
+            throw new IOException("Halo message too large: " + bytes + " bytes.");
+        }
+        if (bytes > buffer.capacity()) {
+            int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(bytes, 2L * buffer.capacity()));
+            buffer = ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.advn.physics;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a decomposed run reproduces a single-world run exactly with the default halo.
+ */
+class DomainDecompositionTest {
+    private static final int STEPS = 120;
+    private static final double DT = 1.0 / 120;
+
+    @Test
+    void inProcessSocketRunMatchesSingleWorld() throws Exception {
+        DomainDecomposition decomposition = newDecomposition(3);
+        decomposition.setTransport(DomainDecomposition.Transport.SOCKET);
+        decomposition.setBasePort(47_300);
+        assertSameState(decomposition);
+    }
+
+    @Test
+    void inProcessMappedFileRunMatchesSingleWorld() throws Exception {
+        DomainDecomposition decomposition = newDecomposition(3);
+        decomposition.setTransport(DomainDecomposition.Transport.MAPPED_FILE);
+        assertSameState(decomposition);
+    }
+
+    @Test
+    void stripsNarrowerThanTheHaloAreRejected() {
+        // A dense pile: quantile borders put the two interior borders a fraction of the halo apart.
+        Random random = new Random(11);
+        double[][] rows = new double[300][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new double[] {random.nextDouble() * 2, random.nextDouble() * 2, 0, 0, 0.2, 1};
+        }
+        DomainDecomposition decomposition = newDecomposition(3);
+        decomposition.setTransport(DomainDecomposition.Transport.MAPPED_FILE);
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> decomposition.runInProcess(new Matrix(rows), 1, DT));
+        assertTrue(e.getMessage().contains("narrower than the halo"), e.getMessage());
+    }
+
+    private static DomainDecomposition newDecomposition(int regions) {
+        DomainDecomposition decomposition = new DomainDecomposition(regions);
+        decomposition.setGravity(0, -9.8);
+        decomposition.setRestitution(0.2);
+        return decomposition;
+    }
+
+    private static void assertSameState(DomainDecomposition decomposition) throws Exception {
+        Matrix scene = scene();
+        double[][] single = decomposition.runSingle(scene, STEPS, DT).rawValues();
+        double[][] split = decomposition.runInProcess(scene, STEPS, DT).rawValues();
+        for (int i = 0; i < single.length; i++) {
+            assertArrayEquals(single[i], split[i], "body " + i);
+        }
+    }
+
+    /**
+     * A static floor with falling bodies spread over it, so contacts cross both borders.
+     */
+    private static Matrix scene() {
+        Random random = new Random(5);
+        double[][] rows = new double[800][];
+        for (int i = 0; i < 200; i++) {
+            rows[i] = new double[] {i * 0.5, -0.5, 0, 0, 0.25, 0};
+        }
+        for (int i = 200; i < rows.length; i++) {
+            rows[i] = new double[] {random.nextDouble() * 99, 1 + random.nextDouble() * 20,
+                    random.nextGaussian() * 3, random.nextGaussian(), 0.2, 1};
+        }
+        return new Matrix(rows);
+    }
+}
@@ -0,0 +1,201 @@
+package com.advn.physics;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the documented error bounds of {@link FastTrig} against {@link Math} over the whole input domain.
+ */
+class FastTrigAccuracyTest {
+    private static final int SAMPLES = 2_000_000;
+    private static final double[] SPECIAL = {
+        Double.NaN, 0.0, -0.0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+        Double.MIN_VALUE, -Double.MIN_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, 1.0, -1.0
+    };
+
+    @Test
+    void sinAndCosStayWithinBoundUpToOneMillion() {
+        Random random = new Random(1);
+        MaxError sin = new MaxError();
+        MaxError cos = new MaxError();
+        for (int i = 0; i < SAMPLES; i++) {
+            // Half the samples cover a few periods densely, the other half every magnitude up to 1e6.
+            double x = i % 2 == 0
+                    ? (random.nextDouble() * 4 - 2) * Math.PI
+                    : Math.copySign(Math.pow(10, random.nextDouble() * 12 - 6), random.nextDouble() - 0.5);
+            sin.add(x, FastTrig.sin(x), Math.sin(x));
+            cos.add(x, FastTrig.cos(x), Math.cos(x));
+        }
+        for (double x : new double[] {1e6, -1e6, Math.nextDown(1e6), Math.PI / 4, Math.PI / 2, Math.PI, 1e-300}) {
+            sin.add(x, FastTrig.sin(x), Math.sin(x));
+            cos.add(x, FastTrig.cos(x), Math.cos(x));
+        }
+        sin.check("sin", FastTrig.SIN_COS_MAX_ERROR);
+        cos.check("cos", FastTrig.SIN_COS_MAX_ERROR);
+    }
+
+    @Test
+    void sinAndCosDelegateBeyondReductionLimit() {
+        for (double x : new double[] {Math.nextUp(1e6), 1e7, -3.5e12, 1e300}) {
+            assertEquals(Math.sin(x), FastTrig.sin(x), "sin(" + x + ")");
+            assertEquals(Math.cos(x), FastTrig.cos(x), "cos(" + x + ")");
+        }
+    }
+
+    @Test
+    void atanStaysWithinBound() {
+        Random random = new Random(2);
+        MaxError error = new MaxError();
+        for (int i = 0; i < SAMPLES; i++) {
+            double x = Math.copySign(Math.pow(10, random.nextDouble() * 40 - 20), random.nextDouble() - 0.5);
+            error.add(x, FastTrig.atan(x), Math.atan(x));
+        }
+        for (double x : new double[] {1.0, -1.0, 0.41421356237309503, Double.MAX_VALUE, Double.MIN_VALUE}) {
+            error.add(x, FastTrig.atan(x), Math.atan(x));
+        }
+        error.check("atan", FastTrig.ATAN_MAX_ERROR);
+    }
+
+    @Test
+    void atan2StaysWithinBoundForMixedMagnitudesAndSigns() {
+        Random random = new Random(3);
+        MaxError error = new MaxError();
+        for (int i = 0; i < SAMPLES; i++) {
+            double y = Math.copySign(Math.pow(10, random.nextDouble() * 40 - 20), random.nextDouble() - 0.5);
+            double x = Math.copySign(Math.pow(10, random.nextDouble() * 40 - 20), random.nextDouble() - 0.5);
+            error.add(y, x, FastTrig.atan2(y, x), Math.atan2(y, x));
+        }
+        // Points on the axes and diagonals, where the octant reduction switches branches.
+        for (double y : new double[] {1, -1, 0, 1e-300, -1e300}) {
+            for (double x : new double[] {1, -1, 0, 1e-300, -1e300}) {
+                error.add(y, x, FastTrig.atan2(y, x), Math.atan2(y, x));
+            }
+        }
+        error.check("atan2", FastTrig.ATAN_MAX_ERROR);
+    }
+
+    @Test
+    void acosStaysWithinBoundIncludingNearPlusMinusOne() {
+        Random random = new Random(4);
+        MaxError error = new MaxError();
+        for (int i = 0; i < SAMPLES; i++) {
+            double x = i % 2 == 0
+                    ? random.nextDouble() * 2 - 1
+                    : Math.copySign(1 - Math.pow(10, -random.nextDouble() * 17), random.nextDouble() - 0.5);
+            error.add(x, FastTrig.acos(x), Math.acos(x));
+        }
+        for (double x : new double[] {1.0, -1.0, Math.nextDown(1.0), Math.nextUp(-1.0), 0.5, -0.5}) {
+            error.add(x, FastTrig.acos(x), Math.acos(x));
+        }
+        error.check("acos", FastTrig.ACOS_MAX_ERROR);
+        assertEquals(Math.acos(Math.nextUp(1.0)), FastTrig.acos(Math.nextUp(1.0)));
+        assertEquals(Math.acos(Math.nextDown(-1.0)), FastTrig.acos(Math.nextDown(-1.0)));
+    }
+
+    @Test
+    void specialValuesFollowMath() {
+        checkSpecial("sin", FastTrig::sin, Math::sin);
+        checkSpecial("cos", FastTrig::cos, Math::cos);
+        checkSpecial("atan", FastTrig::atan, Math::atan);
+        checkSpecial("acos", FastTrig::acos, Math::acos);
+        checkSpecial("atan2", FastTrig::atan2, Math::atan2);
+    }
+
+    @Test
+    void bulkVersionsMatchScalarVersions() {
+        Random random = new Random(5);
+        int n = 10_000;
+        double[] a = new double[n];
+        double[] b = new double[n];
+        double[] unit = new double[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = (random.nextDouble() - 0.5) * 200;
+            b[i] = (random.nextDouble() - 0.5) * 200;
+            unit[i] = random.nextDouble() * 2 - 1;
+        }
+        double[] out = new double[n];
+        double[] expected = new double[n];
+
+        FastTrig.sin(a, out);
+        for (int i = 0; i < n; i++) {
+            expected[i] = FastTrig.sin(a[i]);
+        }
+        assertArrayEquals(expected, out, "sin");
+
+        FastTrig.cos(a, out);
+        for (int i = 0; i < n; i++) {
+            expected[i] = FastTrig.cos(a[i]);
+        }
+        assertArrayEquals(expected, out, "cos");
+
+        FastTrig.atan2(a, b, out);
+        for (int i = 0; i < n; i++) {
+            expected[i] = FastTrig.atan2(a[i], b[i]);
+        }
+        assertArrayEquals(expected, out, "atan2");
+
+        FastTrig.acos(unit, out);
+        for (int i = 0; i < n; i++) {
+            expected[i] = FastTrig.acos(unit[i]);
+        }
+        assertArrayEquals(expected, out, "acos");
+    }
+
+    private static void checkSpecial(String name, DoubleUnaryOperator fast, DoubleUnaryOperator exact) {
+        for (double x : SPECIAL) {
+            double expected = exact.applyAsDouble(x);
+            double actual = fast.applyAsDouble(x);
+            if (Double.isNaN(expected) || expected == 0 || Double.isInfinite(expected)) {
+                assertEquals(expected, actual, name + "(" + x + ")");
+            }
+        }
+    }
+
+    private static void checkSpecial(String name, DoubleBinaryOperator fast, DoubleBinaryOperator exact) {
+        for (double y : SPECIAL) {
+            for (double x : SPECIAL) {
+                double expected = exact.applyAsDouble(y, x);
+                double actual = fast.applyAsDouble(y, x);
+                if (Double.isNaN(expected) || expected == 0 || Double.isInfinite(expected)) {
+                    assertEquals(expected, actual, name + "(" + y + ", " + x + ")");
+                } else {
+                    assertTrue(Math.abs(actual - expected) <= FastTrig.ATAN_MAX_ERROR,
+                            name + "(" + y + ", " + x + ") = " + actual + ", expected " + expected);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tracks the largest absolute error and the input that produced it. A NaN where {@link Math} is finite counts as infinite error.
+     */
+    private static final class MaxError {
+        private double max;
+        private String worst = "none";
+
+        void add(double x, double actual, double expected) {
+            add(x, Double.NaN, actual, expected);
+        }
+
+        void add(double y, double x, double actual, double expected) {
+            double error = Math.abs(actual - expected);
+            if (Double.isNaN(error)) {
+                error = Double.POSITIVE_INFINITY;
+            }
+            if (error > max) {
+                max = error;
+                worst = (Double.isNaN(x) ? Double.toString(y) : y + ", " + x) + ": " + actual + " vs " + expected;
+            }
+        }
+
+        void check(String name, double bound) {
+            assertTrue(max <= bound, name + " error " + max + " exceeds " + bound + " at (" + worst + ")");
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.advn.physics;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.StringJoiner;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Runs the default hot-path budgets. Allocation per call is deterministic and always checked. Latency
+ * depends on the machine, so its budget is only enforced when {@code -Dhotpath.latency=true} is given,
+ * for example {@code mvn test -Dhotpath.latency=true} on a quiet benchmark machine.
+ */
+class HotPathBudgetTest {
+    private static final Path REPORT = Paths.get("target", "hot-path-report.csv");
+    private static List<HotPathResult> results;
+
+    @BeforeAll
+    static void runHarness() throws IOException {
+        results = HotPathHarness.withDefaultBudgets().run();
+        HotPathHarness.writeReport(results, REPORT);
+    }
+
+    @Test
+    void defaultHotPathsStayWithinAllocationBudget() {
+        StringJoiner failures = new StringJoiner("\n");
+        for (HotPathResult result : results) {
+            if (!result.isWithinAllocationBudget()) {
+                failures.add(result.toString());
+            }
+        }
+        assertTrue(failures.length() == 0, "Hot paths over allocation budget, see " + REPORT + ":\n" + failures);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "hotpath.latency", matches = "true")
+    void defaultHotPathsStayWithinLatencyBudget() {
+        StringJoiner failures = new StringJoiner("\n");
+        for (HotPathResult result : results) {
+            if (!result.isWithinLatencyBudget()) {
+                failures.add(result.toString());
+            }
+        }
+        assertTrue(failures.length() == 0, "Hot paths over latency budget, see " + REPORT + ":\n" + failures);
+    }
+}
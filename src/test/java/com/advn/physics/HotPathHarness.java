@@ -0,0 +1,290 @@
+package com.advn.physics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Allocation and latency regression harness for per-body hot paths.
+ *
+ * <p>Each declared method is warmed up until it is JIT-compiled. The harness then runs a fixed
+ * number of samples of consecutive calls. Allocation is measured with the per-thread
+ * allocated-bytes counter of {@code com.sun.management.ThreadMXBean} across all samples and
+ * reported per call. Latency percentiles are taken over the per-call average of each sample,
+ * because a single call is shorter than the resolution of {@link System#nanoTime()}.
+ *
+ * <p>Results are passed to a {@link Sink}, which makes them escape. Escape analysis therefore
+ * cannot hide an allocation in the harness that would be visible in a real caller.
+ *
+ * <p>{@code HotPathBudgetTest} runs {@link #withDefaultBudgets()} as part of {@code mvn test},
+ * writes {@code target/hot-path-report.csv} and checks the allocation budgets; the latency budgets
+ * are only checked with {@code -Dhotpath.latency=true}. {@link #main(String[])} runs the harness
+ * outside the test runner, printing the results and exiting with status 1 if any budget is exceeded:
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes com.advn.physics.HotPathHarness hot-path-report.csv
+ * </pre>
+ * Latency budgets apply to the 90th percentile. Samples that contain a young collection set the
+ * 99th percentile of allocating methods, which makes it too noisy to gate on, so it is only
+ * reported. The budgets are generous ceilings meant to catch order-of-magnitude regressions.
+ * Allocation budgets are exact: a zero-byte budget fails as soon as a method starts allocating.
+ */
+public class HotPathHarness {
+    private final int warmupCalls;
+    private final int samples;
+    private final int callsPerSample;
+    private final List<Declaration> declarations = new ArrayList<>();
+    private final Sink sink = new Sink();
+
+    /**
+     * Creates a harness with 20000 warm-up calls and 200 samples of 1000 calls.
+     */
+    public HotPathHarness() {
+        this(20_000, 200, 1_000);
+    }
+
+    /**
+     * Creates a harness.
+     *
+     * @param warmupCalls    the number of calls made before measuring
+     * @param samples        the number of latency samples
+     * @param callsPerSample the number of consecutive calls timed as one sample
+     * @throws IllegalArgumentException if any count is negative or a sample count is zero
+     */
+    public HotPathHarness(int warmupCalls, int samples, int callsPerSample) {
+        if (warmupCalls < 0 || samples < 1 || callsPerSample < 1) {
+            throw new IllegalArgumentException("Sample counts must be positive.");
+        }
+        this.warmupCalls = warmupCalls;
+        this.samples = samples;
+        this.callsPerSample = callsPerSample;
+    }
+
+    /**
+     * Declares a hot-path method and its budgets.
+     *
+     * @param name            the name used in the report
+     * @param maxBytesPerCall the allocation budget in bytes per call
+     * @param maxP90Nanos     the 90th percentile latency budget in nanoseconds per call
+     * @param call            one call of the method
+     * @throws IllegalArgumentException if a budget is negative
+     */
+    public void declare(String name, long maxBytesPerCall, double maxP90Nanos, Call call) {
+        if (maxBytesPerCall < 0 || maxP90Nanos < 0) {
+            throw new IllegalArgumentException("Budgets cannot be negative.");
+        }
+        declarations.add(new Declaration(name, maxBytesPerCall, maxP90Nanos, call));
+    }
+
+    /**
+     * Measures every declared method on the calling thread, in declaration order.
+     *
+     * @return one result per declared method
+     */
+    public List<HotPathResult> run() {
+        List<HotPathResult> results = new ArrayList<>(declarations.size());
+        double[] perCall = new double[samples];
+        for (Declaration declaration : declarations) {
+            results.add(measure(declaration, perCall));
+        }
+        return results;
+    }
+
+    private HotPathResult measure(Declaration declaration, double[] perCall) {
+        Call call = declaration.call;
+        for (int i = 0; i < warmupCalls; i++) {
+            call.run(sink);
+        }
+
+        long probe = PhysicsMetrics.currentThreadAllocatedBytes();
+        long counterOverhead = PhysicsMetrics.currentThreadAllocatedBytes() - probe;
+        long allocatedBefore = PhysicsMetrics.currentThreadAllocatedBytes();
+        for (int s = 0; s < samples; s++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < callsPerSample; i++) {
+                call.run(sink);
+            }
+            perCall[s] = (double) (System.nanoTime() - start) / callsPerSample;
+        }
+        long allocatedAfter = PhysicsMetrics.currentThreadAllocatedBytes();
+
+        double bytesPerCall = Double.NaN;
+        if (allocatedBefore >= 0) {
+            bytesPerCall = Math.max(0, allocatedAfter - allocatedBefore - counterOverhead) / ((double) samples * callsPerSample);
+        }
+        Arrays.sort(perCall);
+        return new HotPathResult(declaration.name, bytesPerCall, percentile(perCall, 0.50), percentile(perCall, 0.90),
+                percentile(perCall, 0.99), perCall[perCall.length - 1], declaration.maxBytesPerCall,
+                declaration.maxP90Nanos);
+    }
+
+    private static double percentile(double[] sorted, double fraction) {
+        int rank = (int) Math.ceil(fraction * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * Writes a CSV report, one line per method, preceded by comment lines identifying the run.
+     *
+     * @param results the results to write
+     * @param path    the report file; replaced if it exists
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeReport(List<HotPathResult> results, Path path) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("# timestamp=" + Instant.now());
+            writer.newLine();
+            writer.write("# java.version=" + System.getProperty("java.version")
+                    + " java.vm.name=" + System.getProperty("java.vm.name"));
+            writer.newLine();
+            writer.write("# os.arch=" + System.getProperty("os.arch")
+                    + " processors=" + Runtime.getRuntime().availableProcessors());
+            writer.newLine();
+            writer.write("name,bytes_per_call,byte_budget,p50_ns,p90_ns,p99_ns,max_ns,p90_budget_ns,status");
+            writer.newLine();
+            for (HotPathResult r : results) {
+                writer.write(String.format(Locale.ROOT, "%s,%.2f,%d,%.2f,%.2f,%.2f,%.2f,%.0f,%s",
+                        r.getName(), r.getBytesPerCall(), r.getMaxBytesPerCall(), r.getP50Nanos(), r.getP90Nanos(),
+                        r.getP99Nanos(), r.getMaxNanos(), r.getMaxP90Nanos(), r.isPassed() ? "ok" : "FAIL"));
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Creates a harness with the project's declared hot paths on {@link PhysicsVector}, {@link Matrix},
+     * {@link PhysicsMass} and {@link PhysicsAngle}. A new {@link PhysicsVector} or {@code double[2]} costs
+     * 32 bytes on 64-bit HotSpot, with or without compressed pointers. Methods built on other allocating
+     * methods are budgeted for their intermediates as well, which escape analysis usually removes.
+     *
+     * @return the harness
+     */
+    public static HotPathHarness withDefaultBudgets() {
+        HotPathHarness h = new HotPathHarness();
+
+        PhysicsVector a = new PhysicsVector(3, 4);
+        PhysicsVector b = new PhysicsVector(-1.5, 2.5);
+        PhysicsVector unit = new PhysicsVector(0.6, 0.8);
+        PhysicsVector unit2 = new PhysicsVector(0, 1);
+        h.declare("PhysicsVector.add", 32, 400, s -> s.consume(a.add(b)));
+        h.declare("PhysicsVector.subtract", 32, 400, s -> s.consume(a.subtract(b)));
+        h.declare("PhysicsVector.scale", 32, 400, s -> s.consume(a.scale(1.5)));
+        h.declare("PhysicsVector.normalize", 32, 400, s -> s.consume(a.normalize()));
+        h.declare("PhysicsVector.dotProduct", 0, 100, s -> s.consume(a.dotProduct(b)));
+        h.declare("PhysicsVector.cross", 0, 100, s -> s.consume(a.cross(b)));
+        h.declare("PhysicsVector.magnitude", 0, 100, s -> s.consume(a.magnitude()));
+        h.declare("PhysicsVector.distanceTo", 0, 100, s -> s.consume(a.distanceTo(b)));
+        h.declare("PhysicsVector.distanceSquaredTo", 0, 100, s -> s.consume(a.distanceSquaredTo(b)));
+        h.declare("PhysicsVector.angleBetween", 0, 500, s -> s.consume(a.angleBetween(b)));
+        h.declare("PhysicsVector.reflect", 64, 400, s -> s.consume(a.reflect(unit)));
+        h.declare("PhysicsVector.closestPointOnLineSegment", 96, 400,
+                s -> s.consume(a.closestPointOnLineSegment(b, unit)));
+        h.declare("PhysicsVector.slerp", 96, 1500, s -> s.consume(PhysicsVector.slerp(unit, unit2, 0.3)));
+
+        Matrix m = new Matrix(new double[][] {{1, 2, 0}, {0, 1, 3}, {4, 0, 1}});
+        Matrix n = new Matrix(new double[][] {{2, 0, 1}, {1, 3, 0}, {0, 1, 2}});
+        Matrix m2 = new Matrix(new double[][] {{4, 7}, {2, 6}});
+        h.declare("Matrix.get", 0, 100, s -> s.consume(m.get(1, 2)));
+        h.declare("Matrix.set", 0, 100, s -> m.set(1, 1, 1));
+        h.declare("Matrix.multiply(3x3)", 168, 2000, s -> s.consume(m.multiply(n)));
+        h.declare("Matrix.add(3x3)", 168, 2000, s -> s.consume(m.add(n)));
+        h.declare("Matrix.determinant(2x2)", 0, 100, s -> s.consume(m2.determinant()));
+        h.declare("Matrix.inverse(2x2)", 104, 1000, s -> s.consume(m2.inverse()));
+
+        PhysicsMass mass = new PhysicsMass(12.5);
+        PhysicsMass other = new PhysicsMass(3.25);
+        PhysicsMass[] masses = {mass, other, new PhysicsMass(1), new PhysicsMass(7)};
+        double[] positions = {0, 1.5, -2, 4};
+        h.declare("PhysicsMass.calculateKineticEnergy", 0, 100, s -> s.consume(mass.calculateKineticEnergy(3)));
+        h.declare("PhysicsMass.calculateRelativisticMass", 0, 200, s -> s.consume(mass.calculateRelativisticMass(1e7)));
+        h.declare("PhysicsMass.ratioWith", 0, 100, s -> s.consume(mass.ratioWith(other)));
+        h.declare("PhysicsMass.calculateCenterOfMass", 0, 200,
+                s -> s.consume(PhysicsMass.calculateCenterOfMass(masses, positions)));
+        h.declare("PhysicsMass.addMass", 0, 100, s -> {
+            mass.addMass(other);
+            mass.subtractMass(other);
+        });
+
+        PhysicsAngle angle = new PhysicsAngle(1.0);
+        PhysicsAngle step = new PhysicsAngle(0.25);
+        h.declare("PhysicsAngle.add", 0, 200, s -> angle.add(step));
+        h.declare("PhysicsAngle.normalize", 0, 200, s -> angle.normalize());
+        h.declare("PhysicsAngle.angleBetween", 0, 100, s -> s.consume(angle.angleBetween(step)));
+        h.declare("PhysicsAngle.convertToDegrees", 0, 100, s -> s.consume(angle.convertToDegrees(1.25)));
+        return h;
+    }
+
+    /**
+     * Runs the default budgets and writes a report.
+     *
+     * @param args an optional report path, {@code hot-path-report.csv} by default
+     * @throws IOException if the report cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        Path report = Paths.get(args.length > 0 ? args[0] : "hot-path-report.csv");
+        List<HotPathResult> results = withDefaultBudgets().run();
+        int failures = 0;
+        for (HotPathResult result : results) {
+            System.out.println(result);
+            if (!result.isPassed()) {
+                failures++;
+            }
+        }
+        writeReport(results, report);
+        System.out.println("Report written to " + report.toAbsolutePath());
+        if (failures > 0) {
+            System.out.println(failures + " of " + results.size() + " hot paths exceeded their budget.");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * One call of a hot-path method. Results must be passed to the sink.
+     */
+    @FunctionalInterface
+    public interface Call {
+        void run(Sink sink);
+    }
+
+    /**
+     * Keeps results reachable so the JIT can neither remove the call nor scalar-replace its result.
+     */
+    public static final class Sink {
+        private Object lastObject;
+        private double lastValue;
+
+        public void consume(Object value) {
+            lastObject = value;
+        }
+
+        public void consume(double value) {
+            lastValue += value;
+        }
+
+        public void consume(boolean value) {
+            lastValue += value ? 1 : 0;
+        }
+    }
+
+    private static final class Declaration {
+        final String name;
+        final long maxBytesPerCall;
+        final double maxP90Nanos;
+        final Call call;
+
+        Declaration(String name, long maxBytesPerCall, double maxP90Nanos, Call call) {
+            this.name = name;
+            this.maxBytesPerCall = maxBytesPerCall;
+            this.maxP90Nanos = maxP90Nanos;
+            this.call = call;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.advn.physics;
+
+/**
+ * Measurements of one hot-path method from a {@link HotPathHarness} run, together with its declared budgets.
+ * Latencies are per call, averaged over one sample of consecutive calls.
+ */
+public class HotPathResult {
+    private final String name;
+    private final double bytesPerCall;
+    private final double p50Nanos;
+    private final double p90Nanos;
+    private final double p99Nanos;
+    private final double maxNanos;
+    private final long maxBytesPerCall;
+    private final double maxP90Nanos;
+
+    HotPathResult(String name, double bytesPerCall, double p50Nanos, double p90Nanos, double p99Nanos,
+                  double maxNanos, long maxBytesPerCall, double maxP90Nanos) {
+        this.name = name;
+        this.bytesPerCall = bytesPerCall;
+        this.p50Nanos = p50Nanos;
+        this.p90Nanos = p90Nanos;
+        this.p99Nanos = p99Nanos;
+        this.maxNanos = maxNanos;
+        this.maxBytesPerCall = maxBytesPerCall;
+        this.maxP90Nanos = maxP90Nanos;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the average number of bytes allocated per call.
+     *
+     * @return the bytes per call, or NaN if the JVM does not report thread allocation
+     */
+    public double getBytesPerCall() {
+        return bytesPerCall;
+    }
+
+    public double getP50Nanos() {
+        return p50Nanos;
+    }
+
+    public double getP90Nanos() {
+        return p90Nanos;
+    }
+
+    public double getP99Nanos() {
+        return p99Nanos;
+    }
+
+    public double getMaxNanos() {
+        return maxNanos;
+    }
+
+    public long getMaxBytesPerCall() {
+        return maxBytesPerCall;
+    }
+
+    public double getMaxP90Nanos() {
+        return maxP90Nanos;
+    }
+
+    /**
+     * Checks the allocation budget. Half a byte per call is tolerated so that counter overhead and
+     * rare allocations inside the JIT-compiled loop do not fail a zero-byte budget.
+     *
+     * @return true if the allocation budget holds or allocation could not be measured
+     */
+    public boolean isWithinAllocationBudget() {
+        return Double.isNaN(bytesPerCall) || bytesPerCall <= maxBytesPerCall + 0.5;
+    }
+
+    public boolean isWithinLatencyBudget() {
+        return p90Nanos <= maxP90Nanos;
+    }
+
+    public boolean isPassed() {
+        return isWithinAllocationBudget() && isWithinLatencyBudget();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-40s %8.1f B/call (budget %d)  p50 %8.1f ns  p90 %8.1f ns (budget %.0f)  p99 %8.1f ns  %s",
+                name, bytesPerCall, maxBytesPerCall, p50Nanos, p90Nanos, maxP90Nanos, p99Nanos, isPassed() ? "ok" : "FAIL");
+    }
+}
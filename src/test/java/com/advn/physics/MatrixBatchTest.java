@@ -0,0 +1,237 @@
+package com.advn.physics;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the batch kernels against {@link Matrix} and a per-matrix LU reference, for the closed-form
+ * sizes 1 to 3 and the LU sizes above, on batches small enough to run inline and large enough to fork.
+ */
+class MatrixBatchTest {
+    private static final int SMALL = 300;
+    // Above PARALLEL_THRESHOLD and not a multiple of the chunk size.
+    private static final int LARGE = 5_003;
+    private static final double TOLERANCE = 1e-10;
+
+    @Test
+    void multiplyMatchesMatrixExactly() {
+        Random random = new Random(1);
+        for (int n = 1; n <= 6; n++) {
+            for (int count : new int[] {SMALL, LARGE}) {
+                MatrixBatch a = randomBatch(random, count, n, n);
+                MatrixBatch b = randomBatch(random, count, n, 2);
+                MatrixBatch product = a.multiply(b);
+                for (int index = 0; index < count; index++) {
+                    Matrix expected = a.getMatrix(index).multiply(b.getMatrix(index));
+                    assertEquals(expected, product.getMatrix(index), "n=" + n + " matrix " + index);
+                }
+            }
+        }
+    }
+
+    @Test
+    void determinantsMatchReference() {
+        Random random = new Random(2);
+        for (int n = 1; n <= 6; n++) {
+            for (int count : new int[] {SMALL, LARGE}) {
+                MatrixBatch a = randomBatch(random, count, n, n);
+                double[] determinants = a.determinants();
+                for (int index = 0; index < count; index++) {
+                    Matrix m = a.getMatrix(index);
+                    double expected = n == 2 ? m.determinant() : Reference.determinant(m.rawValues());
+                    assertEquals(expected, determinants[index], TOLERANCE * Math.max(1, Math.abs(expected)),
+                            "n=" + n + " matrix " + index);
+                }
+            }
+        }
+    }
+
+    @Test
+    void inverseMatchesReference() {
+        Random random = new Random(3);
+        for (int n = 1; n <= 6; n++) {
+            for (int count : new int[] {SMALL, LARGE}) {
+                MatrixBatch a = randomBatch(random, count, n, n);
+                MatrixBatch inverse = a.inverse();
+                for (int index = 0; index < count; index++) {
+                    Matrix m = a.getMatrix(index);
+                    double[][] expected = n == 2 ? m.inverse().rawValues() : Reference.solve(m.rawValues(), identity(n));
+                    assertClose(expected, inverse.getMatrix(index).rawValues(), "n=" + n + " matrix " + index);
+                }
+            }
+        }
+    }
+
+    @Test
+    void solveMatchesReference() {
+        Random random = new Random(4);
+        for (int n = 1; n <= 6; n++) {
+            for (int count : new int[] {SMALL, LARGE}) {
+                MatrixBatch a = randomBatch(random, count, n, n);
+                MatrixBatch rhs = randomBatch(random, count, n, 3);
+                MatrixBatch solution = a.solve(rhs);
+                for (int index = 0; index < count; index++) {
+                    double[][] expected = Reference.solve(a.getMatrix(index).rawValues(), rhs.getMatrix(index).rawValues());
+                    assertClose(expected, solution.getMatrix(index).rawValues(), "n=" + n + " matrix " + index);
+                }
+            }
+        }
+    }
+
+    @Test
+    void closedFormSolveMatchesInverseTimesRightHandSideBitForBit() {
+        Random random = new Random(5);
+        for (int n = 1; n <= 3; n++) {
+            for (int rhsCols = 1; rhsCols <= 3; rhsCols++) {
+                MatrixBatch a = randomBatch(random, LARGE, n, n);
+                MatrixBatch rhs = randomBatch(random, LARGE, n, rhsCols);
+                MatrixBatch solution = a.solve(rhs);
+                MatrixBatch expected = a.inverse().multiply(rhs);
+                for (int index = 0; index < LARGE; index++) {
+                    double[][] x = solution.getMatrix(index).rawValues();
+                    double[][] y = expected.getMatrix(index).rawValues();
+                    for (int i = 0; i < n; i++) {
+                        assertArrayEquals(y[i], x[i], "n=" + n + " matrix " + index);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void singularMatrixIsNamedOnTheParallelPath() {
+        for (int n : new int[] {2, 3, 5}) {
+            MatrixBatch a = new MatrixBatch(LARGE, n, n);
+            for (int index = 0; index < LARGE; index++) {
+                for (int i = 0; i < n; i++) {
+                    a.set(index, i, i, 1);
+                }
+            }
+            a.set(4_321, n - 1, n - 1, 0);
+            String message = "Matrix 4321 of the batch is singular and cannot be inverted.";
+            assertEquals(message, assertThrows(ArithmeticException.class, a::inverse).getMessage(), "inverse n=" + n);
+            assertEquals(message, assertThrows(ArithmeticException.class,
+                    () -> a.solve(new MatrixBatch(LARGE, n, 1))).getMessage(), "solve n=" + n);
+            assertEquals(0, a.determinants()[4_321], "determinant n=" + n);
+        }
+    }
+
+    @Test
+    void shapeErrors() {
+        MatrixBatch square = new MatrixBatch(4, 3, 3);
+        assertThrows(IllegalArgumentException.class, () -> new MatrixBatch(4, 2, 3).inverse());
+        assertThrows(IllegalArgumentException.class, () -> square.multiply(new MatrixBatch(4, 2, 3)));
+        assertThrows(IllegalArgumentException.class, () -> square.solve(new MatrixBatch(5, 3, 1)));
+        assertThrows(IllegalArgumentException.class, () -> square.inverseInto(square));
+        assertThrows(IndexOutOfBoundsException.class, () -> square.get(4, 0, 0));
+    }
+
+    /**
+     * Diagonally dominant matrices, so every system is well conditioned and the tolerance is meaningful.
+     */
+    private static MatrixBatch randomBatch(Random random, int count, int rows, int cols) {
+        MatrixBatch batch = new MatrixBatch(count, rows, cols);
+        for (int index = 0; index < count; index++) {
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < cols; j++) {
+                    batch.set(index, i, j, random.nextDouble() * 2 - 1 + (i == j ? rows : 0));
+                }
+            }
+        }
+        return batch;
+    }
+
+    private static double[][] identity(int n) {
+        return Matrix.identity(n).rawValues();
+    }
+
+    private static void assertClose(double[][] expected, double[][] actual, String message) {
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(expected[i], actual[i], TOLERANCE, message);
+        }
+    }
+
+    /**
+     * Gaussian elimination with partial pivoting on plain arrays, one matrix at a time.
+     */
+    private static final class Reference {
+        static double determinant(double[][] matrix) {
+            int n = matrix.length;
+            double[][] a = copy(matrix);
+            double det = 1;
+            for (int k = 0; k < n; k++) {
+                int pivot = pivot(a, k);
+                if (pivot != k) {
+                    double[] row = a[k];
+                    a[k] = a[pivot];
+                    a[pivot] = row;
+                    det = -det;
+                }
+                det *= a[k][k];
+                for (int i = k + 1; i < n; i++) {
+                    double factor = a[i][k] / a[k][k];
+                    for (int j = k; j < n; j++) {
+                        a[i][j] -= factor * a[k][j];
+                    }
+                }
+            }
+            return det;
+        }
+
+        static double[][] solve(double[][] matrix, double[][] rhs) {
+            int n = matrix.length;
+            int m = rhs[0].length;
+            double[][] a = copy(matrix);
+            double[][] x = copy(rhs);
+            for (int k = 0; k < n; k++) {
+                int pivot = pivot(a, k);
+                double[] row = a[k];
+                a[k] = a[pivot];
+                a[pivot] = row;
+                row = x[k];
+                x[k] = x[pivot];
+                x[pivot] = row;
+                for (int i = 0; i < n; i++) {
+                    if (i == k) {
+                        continue;
+                    }
+                    double factor = a[i][k] / a[k][k];
+                    for (int j = k; j < n; j++) {
+                        a[i][j] -= factor * a[k][j];
+                    }
+                    for (int j = 0; j < m; j++) {
+                        x[i][j] -= factor * x[k][j];
+                    }
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < m; j++) {
+                    x[i][j] /= a[i][i];
+                }
+            }
+            return x;
+        }
+
+        private static int pivot(double[][] a, int k) {
+            int pivot = k;
+            for (int i = k + 1; i < a.length; i++) {
+                if (Math.abs(a[i][k]) > Math.abs(a[pivot][k])) {
+                    pivot = i;
+                }
+            }
+            return pivot;
+        }
+
+        private static double[][] copy(double[][] values) {
+            double[][] result = new double[values.length][];
+            for (int i = 0; i < values.length; i++) {
+                result[i] = values[i].clone();
+            }
+            return result;
+        }
+    }
+}